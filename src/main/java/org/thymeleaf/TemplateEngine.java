@@ -19,6 +19,7 @@
  */
 package org.thymeleaf;
 
+import java.io.File;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
@@ -38,16 +39,20 @@
 import org.thymeleaf.context.IContext;
 import org.thymeleaf.dialect.IDialect;
 import org.thymeleaf.engine.TemplateManager;
+import org.thymeleaf.engine.TemplateManagerConfiguration;
+import org.thymeleaf.engine.TemplateWarmUp;
 import org.thymeleaf.exceptions.TemplateEngineException;
 import org.thymeleaf.exceptions.TemplateOutputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
 import org.thymeleaf.messageresolver.IMessageResolver;
 import org.thymeleaf.messageresolver.StandardMessageResolver;
 import org.thymeleaf.standard.StandardDialect;
+import org.thymeleaf.templateresolver.IListableTemplateResolver;
 import org.thymeleaf.templateresolver.ITemplateResolver;
 import org.thymeleaf.templateresolver.StringTemplateResolver;
 import org.thymeleaf.text.ITextRepository;
 import org.thymeleaf.text.TextRepositories;
+import org.thymeleaf.util.PatternSpec;
 import org.thymeleaf.util.Validate;
 
 
@@ -217,12 +222,26 @@ public class TemplateEngine implements ITemplateEngine {
 
     private static final int NANOS_IN_SECOND = 1000000;
 
+    public static final int DEFAULT_WARM_UP_PARALLELISM = 2;
+
+    public static final int DEFAULT_PARSER_BUFFER_POOL_SIZE = 40;
+    public static final int DEFAULT_PARSER_BUFFER_SIZE = 2048;
+    public static final boolean DEFAULT_MINIFY_HTML_WHITESPACE = false;
+    public static final boolean DEFAULT_STRIP_HTML_COMMENTS = false;
+
     private final AtomicBoolean initialized = new AtomicBoolean(false);
 
     private final Set<DialectConfiguration> dialectConfigurations = new LinkedHashSet<DialectConfiguration>(3);
     private final Set<ITemplateResolver> templateResolvers = new LinkedHashSet<ITemplateResolver>(3);
     private final Set<IMessageResolver> messageResolvers = new LinkedHashSet<IMessageResolver>(3);
     private ICacheManager cacheManager = null;
+    private final Set<String> warmUpTemplates = new LinkedHashSet<String>(3);
+    private int warmUpParallelism = DEFAULT_WARM_UP_PARALLELISM;
+    private File parsedTemplateCacheDirectory = null;
+    private int parserBufferPoolSize = DEFAULT_PARSER_BUFFER_POOL_SIZE;
+    private int parserBufferSize = DEFAULT_PARSER_BUFFER_SIZE;
+    private boolean minifyHTMLWhitespace = DEFAULT_MINIFY_HTML_WHITESPACE;
+    private boolean stripHTMLComments = DEFAULT_STRIP_HTML_COMMENTS;
 
     // TODO Make this configurable!
     private final ITextRepository textRepository = TextRepositories.createLimitedSizeCacheRepository();
@@ -230,6 +249,7 @@ public class TemplateEngine implements ITemplateEngine {
 
     private IEngineConfiguration configuration = null;
     private TemplateManager templateManager = null;
+    private volatile TemplateWarmUp warmUp = null;
 
 
 
@@ -307,10 +327,25 @@ private void initialize() {
 
                     this.configuration =
                             new EngineConfiguration(this.templateResolvers, this.messageResolvers, this.dialectConfigurations, this.cacheManager, this.textRepository);
-                    this.templateManager = new TemplateManager(this.configuration);
+                    final TemplateManagerConfiguration templateManagerConfiguration = new TemplateManagerConfiguration();
+                    templateManagerConfiguration.setParsedTemplateCacheDirectory(this.parsedTemplateCacheDirectory);
+                    templateManagerConfiguration.setParserBufferPoolSize(this.parserBufferPoolSize);
+                    templateManagerConfiguration.setParserBufferSize(this.parserBufferSize);
+                    templateManagerConfiguration.setMinifyHTMLWhitespace(this.minifyHTMLWhitespace);
+                    templateManagerConfiguration.setStripHTMLComments(this.stripHTMLComments);
+                    this.templateManager = new TemplateManager(this.configuration, templateManagerConfiguration);
 
                     initializeSpecific();
 
+                    // Start parsing the configured templates in the background, if any. This must be done before
+                    // marking the engine as initialized, so that getWarmUp() never returns null while it is starting.
+                    if (!this.warmUpTemplates.isEmpty()) {
+                        this.warmUp =
+                                this.templateManager.warmUp(
+                                        this.configuration, computeWarmUpTemplateNames(this.warmUpTemplates),
+                                        this.warmUpParallelism);
+                    }
+
                     this.initialized.set(true);
 
                     // Log configuration details
@@ -702,6 +737,179 @@ public void setCacheManager(final ICacheManager cacheManager) {
         this.cacheManager = cacheManager;
     }
 
+
+    /**
+     * <p>
+     *   Returns the directory in which parsed templates are persisted, if any.
+     * </p>
+     *
+     * @return the parsed template cache directory, or null if parsed templates are not persisted.
+     */
+    public final File getParsedTemplateCacheDirectory() {
+        return this.parsedTemplateCacheDirectory;
+    }
+
+    /**
+     * <p>
+     *   Sets a local directory in which the result of parsing cacheable templates (and fragments) will be
+     *   persisted, so that templates do not need to be parsed again after the JVM is restarted. Stored results
+     *   are only used if both the template source and the configured dialects are the same they were parsed with.
+     * </p>
+     * <p>
+     *   A directory populated at build time can also be shipped along with an application, so that its
+     *   templates are never parsed at runtime. By default, parsed templates are not persisted (null).
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param parsedTemplateCacheDirectory the directory, or null for not persisting parsed templates.
+     */
+    public void setParsedTemplateCacheDirectory(final File parsedTemplateCacheDirectory) {
+        // Can be set to null (= no persistence of parsed templates)
+        checkNotInitialized();
+        this.parsedTemplateCacheDirectory = parsedTemplateCacheDirectory;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum amount of parse buffers that will be kept for reuse by each of the
+     *   template parsers of this engine.
+     * </p>
+     *
+     * @return the parser buffer pool size.
+     */
+    public final int getParserBufferPoolSize() {
+        return this.parserBufferPoolSize;
+    }
+
+    /**
+     * <p>
+     *   Sets the maximum amount of parse buffers that will be kept for reuse by each of the template parsers
+     *   of this engine. Buffers are only created when needed (so pools grow up to the amount of templates
+     *   actually being parsed at the same time) and parsing never waits for a buffer to be available.
+     *   Default is {@link #DEFAULT_PARSER_BUFFER_POOL_SIZE}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param parserBufferPoolSize the parser buffer pool size (0 for no pooling).
+     */
+    public void setParserBufferPoolSize(final int parserBufferPoolSize) {
+        Validate.isTrue(parserBufferPoolSize >= 0, "Parser buffer pool size cannot be negative");
+        checkNotInitialized();
+        this.parserBufferPoolSize = parserBufferPoolSize;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the size (in chars) of the buffers used by the template parsers of this engine.
+     * </p>
+     *
+     * @return the parser buffer size.
+     */
+    public final int getParserBufferSize() {
+        return this.parserBufferSize;
+    }
+
+    /**
+     * <p>
+     *   Sets the size (in chars) of the buffers used by the template parsers of this engine. Buffers
+     *   will grow if needed for parsing a specific template. Default is {@link #DEFAULT_PARSER_BUFFER_SIZE}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param parserBufferSize the parser buffer size.
+     */
+    public void setParserBufferSize(final int parserBufferSize) {
+        Validate.isTrue(parserBufferSize > 0, "Parser buffer size must be greater than zero");
+        checkNotInitialized();
+        this.parserBufferSize = parserBufferSize;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether whitespace in HTML templates is minified when they are parsed.
+     * </p>
+     *
+     * @return true if HTML whitespace is minified, false if not.
+     */
+    public final boolean getMinifyHTMLWhitespace() {
+        return this.minifyHTMLWhitespace;
+    }
+
+    /**
+     * <p>
+     *   Sets whether whitespace in HTML templates should be minified when they are parsed for being cached.
+     *   If set, each sequence of whitespace in the texts of these templates will be collapsed into a single
+     *   whitespace character, except inside <tt>&lt;pre&gt;</tt>, <tt>&lt;textarea&gt;</tt>,
+     *   <tt>&lt;script&gt;</tt>, <tt>&lt;style&gt;</tt> and <tt>&lt;title&gt;</tt> elements, and in texts
+     *   containing inlined expressions. As minified markup is the one stored in cache, there is no cost for
+     *   this at template execution time. Default is {@link #DEFAULT_MINIFY_HTML_WHITESPACE}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param minifyHTMLWhitespace whether HTML whitespace should be minified.
+     */
+    public void setMinifyHTMLWhitespace(final boolean minifyHTMLWhitespace) {
+        checkNotInitialized();
+        this.minifyHTMLWhitespace = minifyHTMLWhitespace;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether comments in HTML templates are removed when they are parsed.
+     * </p>
+     *
+     * @return true if HTML comments are removed, false if not.
+     */
+    public final boolean getStripHTMLComments() {
+        return this.stripHTMLComments;
+    }
+
+    /**
+     * <p>
+     *   Sets whether comments in HTML templates should be removed when they are parsed for being cached.
+     *   If set, only comments that can be conditional comments (<tt>&lt;!--[if ...]&gt;...&lt;![endif]--&gt;</tt>)
+     *   will be kept, so that the rest are neither stored in cache nor processed or output at template
+     *   execution time. Note this means comment processors will never see the removed comments.
+     *   Default is {@link #DEFAULT_STRIP_HTML_COMMENTS}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param stripHTMLComments whether HTML comments should be removed.
+     */
+    public void setStripHTMLComments(final boolean stripHTMLComments) {
+        checkNotInitialized();
+        this.stripHTMLComments = stripHTMLComments;
+    }
+
     
     /**
      * <p>
@@ -783,6 +991,149 @@ public void setMessageResolver(final IMessageResolver messageResolver) {
         this.messageResolvers.add(messageResolver);
     }
 
+
+
+
+    /**
+     * <p>
+     *   Returns the templates that will be warmed up (parsed in the background and put into the
+     *   template cache) when the engine is initialized.
+     * </p>
+     *
+     * @return the templates to be warmed up.
+     */
+    public final Set<String> getWarmUpTemplates() {
+        return Collections.unmodifiableSet(this.warmUpTemplates);
+    }
+
+    /**
+     * <p>
+     *   Sets the templates that will be warmed up (parsed in the background and put into the
+     *   template cache) when the engine is initialized.
+     * </p>
+     * <p>
+     *   Besides template names, patterns containing <tt>*</tt> wildcards can be specified, which will
+     *   be applied to the names of the templates listed by all the configured template resolvers that
+     *   implement {@link IListableTemplateResolver}. So, for example, <tt>"*"</tt> would warm up
+     *   every template in a {@link org.thymeleaf.templateresolver.BundleTemplateResolver}.
+     * </p>
+     * <p>
+     *   The progress of the warm-up can be monitored (or waited for) by means of {@link #getWarmUp()}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param warmUpTemplates the template names or patterns.
+     */
+    public void setWarmUpTemplates(final Set<String> warmUpTemplates) {
+        Validate.notNull(warmUpTemplates, "Warm-up templates cannot be null");
+        checkNotInitialized();
+        this.warmUpTemplates.clear();
+        this.warmUpTemplates.addAll(warmUpTemplates);
+    }
+
+
+    /**
+     * <p>
+     *   Returns the maximum number of threads that will be used for warming up templates.
+     * </p>
+     *
+     * @return the warm-up parallelism.
+     */
+    public final int getWarmUpParallelism() {
+        return this.warmUpParallelism;
+    }
+
+    /**
+     * <p>
+     *   Sets the maximum number of threads that will be used for warming up templates. Default
+     *   is {@link #DEFAULT_WARM_UP_PARALLELISM}.
+     * </p>
+     * <p>
+     *   This operation can only be executed before processing templates for the first
+     *   time. Once a template is processed, the template engine is considered to be
+     *   <i>initialized</i>, and from then on any attempt to change its configuration
+     *   will result in an exception.
+     * </p>
+     *
+     * @param warmUpParallelism the warm-up parallelism.
+     */
+    public void setWarmUpParallelism(final int warmUpParallelism) {
+        Validate.isTrue(warmUpParallelism > 0, "Warm-up parallelism must be greater than zero");
+        checkNotInitialized();
+        this.warmUpParallelism = warmUpParallelism;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the warm-up started when the engine was initialized (see {@link #setWarmUpTemplates(Set)}),
+     *   so that its progress can be monitored or waited for (e.g. by a readiness probe).
+     * </p>
+     * <p>
+     *   If this method is called before the TemplateEngine has been initialized,
+     *   it causes its initialization.
+     * </p>
+     *
+     * @return the warm-up, or null if no templates were configured for warm-up.
+     */
+    public TemplateWarmUp getWarmUp() {
+        if (!this.initialized.get()) {
+            initialize();
+        }
+        return this.warmUp;
+    }
+
+
+    /**
+     * <p>
+     *   Warms up the specified templates (names or <tt>*</tt> patterns, see {@link #setWarmUpTemplates(Set)}),
+     *   parsing them in the background and putting them into the template cache.
+     * </p>
+     * <p>
+     *   If this method is called before the TemplateEngine has been initialized,
+     *   it causes its initialization.
+     * </p>
+     *
+     * @param templates the template names or patterns.
+     * @return a handle for monitoring the progress of the warm-up.
+     */
+    public TemplateWarmUp warmUp(final Set<String> templates) {
+        Validate.notNull(templates, "Templates cannot be null");
+        if (!this.initialized.get()) {
+            initialize();
+        }
+        return this.templateManager.warmUp(
+                this.configuration, computeWarmUpTemplateNames(templates), this.warmUpParallelism);
+    }
+
+
+    private Set<String> computeWarmUpTemplateNames(final Set<String> templates) {
+        final Set<String> templateNames = new LinkedHashSet<String>(templates.size() * 2);
+        for (final String template : templates) {
+            if (template.indexOf('*') < 0) {
+                templateNames.add(template);
+                continue;
+            }
+            final PatternSpec patternSpec = new PatternSpec();
+            patternSpec.addPattern(template);
+            for (final ITemplateResolver templateResolver : this.configuration.getTemplateResolvers()) {
+                if (templateResolver instanceof IListableTemplateResolver) {
+                    for (final String templateName : ((IListableTemplateResolver)templateResolver).getTemplateNames()) {
+                        if (patternSpec.matches(templateName)) {
+                            templateNames.add(templateName);
+                        }
+                    }
+                }
+            }
+        }
+        return templateNames;
+    }
+
     
     
     
@@ -826,6 +1177,69 @@ public void clearTemplateCacheFor(final String templateName) {
         }
         this.templateManager.clearTemplateCacheFor(templateName);
     }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the amount of template parse operations that could reuse a pooled parser buffer. Together with
+     *   {@link #getParserBufferPoolMissCount()}, this can be used for tuning the parser buffer pool size
+     *   (see {@link #setParserBufferPoolSize(int)}).
+     * </p>
+     * <p>
+     *   If this method is called before the TemplateEngine has been initialized,
+     *   it causes its initialization.
+     * </p>
+     *
+     * @return the parser buffer pool hit count.
+     */
+    public long getParserBufferPoolHitCount() {
+        if (!this.initialized.get()) {
+            initialize();
+        }
+        return this.templateManager.getParserBufferPoolHitCount();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the amount of template parse operations that needed a new parser buffer to be created
+     *   because all pooled ones were in use.
+     * </p>
+     * <p>
+     *   If this method is called before the TemplateEngine has been initialized,
+     *   it causes its initialization.
+     * </p>
+     *
+     * @return the parser buffer pool miss count.
+     */
+    public long getParserBufferPoolMissCount() {
+        if (!this.initialized.get()) {
+            initialize();
+        }
+        return this.templateManager.getParserBufferPoolMissCount();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Releases the resources held by this template engine, such as the background thread used for
+     *   refreshing expired templates. Should be called when the engine is not going to be used anymore
+     *   (e.g. when the application using it is undeployed).
+     * </p>
+     * <p>
+     *   The engine can still process templates after this method is called, but expired templates will
+     *   not be refreshed in the background anymore.
+     * </p>
+     */
+    public void shutdown() {
+        if (this.initialized.get()) {
+            this.templateManager.shutdown();
+        }
+    }
     
     
     
@@ -25,6 +25,7 @@
 
 import org.thymeleaf.engine.ParsedFragmentMarkup;
 import org.thymeleaf.engine.ParsedTemplateMarkup;
+import org.thymeleaf.engine.RenderedTemplateOutput;
 
 
 /**
@@ -55,6 +56,12 @@ public abstract class AbstractCacheManager implements ICacheManager {
     private volatile ICache<String,Properties> messageCache;
     private volatile boolean messageCacheInitialized = false;
 
+    private volatile ICache<String,char[]> fragmentOutputCache;
+    private volatile boolean fragmentOutputCacheInitialized = false;
+
+    private volatile ICache<String,RenderedTemplateOutput> templateOutputCache;
+    private volatile boolean templateOutputCacheInitialized = false;
+
     
     protected AbstractCacheManager() {
         super();
@@ -111,6 +118,32 @@ public final ICache<String, Object> getExpressionCache() {
         return this.expressionCache;
     }
 
+
+    public final ICache<String, char[]> getFragmentOutputCache() {
+        if (!this.fragmentOutputCacheInitialized) {
+            synchronized(this) {
+                if (!this.fragmentOutputCacheInitialized) {
+                    this.fragmentOutputCache = initializeFragmentOutputCache();
+                    this.fragmentOutputCacheInitialized = true;
+                }
+            }
+        }
+        return this.fragmentOutputCache;
+    }
+
+
+    public final ICache<String, RenderedTemplateOutput> getTemplateOutputCache() {
+        if (!this.templateOutputCacheInitialized) {
+            synchronized(this) {
+                if (!this.templateOutputCacheInitialized) {
+                    this.templateOutputCache = initializeTemplateOutputCache();
+                    this.templateOutputCacheInitialized = true;
+                }
+            }
+        }
+        return this.templateOutputCache;
+    }
+
     
     public <K, V> ICache<K, V> getSpecificCache(final String name) {
         // No specific caches are used by default
@@ -145,6 +178,16 @@ public void clearAllCaches() {
         if (expressionCacheObj != null) {
             expressionCacheObj.clear();
         }
+
+        final ICache<String, char[]> fragmentOutputCacheObj = getFragmentOutputCache();
+        if (fragmentOutputCacheObj != null) {
+            fragmentOutputCacheObj.clear();
+        }
+
+        final ICache<String, RenderedTemplateOutput> templateOutputCacheObj = getTemplateOutputCache();
+        if (templateOutputCacheObj != null) {
+            templateOutputCacheObj.clear();
+        }
         
         final List<String> allSpecificCacheNamesObj = getAllSpecificCacheNames();
         if (allSpecificCacheNamesObj != null) {
@@ -166,5 +209,9 @@ public void clearAllCaches() {
     protected abstract ICache<String,Properties> initializeMessageCache();
     
     protected abstract ICache<String,Object> initializeExpressionCache();
+
+    protected abstract ICache<String,char[]> initializeFragmentOutputCache();
+
+    protected abstract ICache<String,RenderedTemplateOutput> initializeTemplateOutputCache();
     
 }
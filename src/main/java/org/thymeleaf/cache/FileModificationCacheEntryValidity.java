@@ -0,0 +1,140 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.io.File;
+
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Implementation of {@link ICacheEntryValidity} for templates resolved from the file system,
+ *   which considers template resolutions (and therefore their cache entries) valid for as long as the
+ *   corresponding file is not modified.
+ * </p>
+ * <p>
+ *   Modifications are detected by comparing the last-modified timestamp and the length of the file
+ *   with the ones it had when this object was created. In order to avoid querying the file system
+ *   on every cache access, these checks are performed at most once per configured <i>check interval</i>.
+ *   Once a modification has been detected, this validity will never be considered valid again.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public class FileModificationCacheEntryValidity
+        implements ICacheEntryValidity {
+
+    private final File file;
+    private final long checkIntervalMs;
+    private final long lastModified;
+    private final long length;
+
+    private volatile long nextCheckTimeInMillis;
+    private volatile boolean modified;
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this validity implementation.
+     * </p>
+     *
+     * @param file the file the template resolution was made from.
+     * @param checkIntervalMs the minimum time (in milliseconds) between two consecutive checks of the file.
+     */
+    public FileModificationCacheEntryValidity(final File file, final long checkIntervalMs) {
+        super();
+        Validate.notNull(file, "File cannot be null");
+        Validate.isTrue(checkIntervalMs >= 0, "Check interval cannot be negative");
+        this.file = file;
+        this.checkIntervalMs = checkIntervalMs;
+        // Note these are read before the template itself, so any changes in between will invalidate it
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.nextCheckTimeInMillis = System.currentTimeMillis() + checkIntervalMs;
+        this.modified = false;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the file whose modifications are being checked.
+     * </p>
+     *
+     * @return the file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the minimum time (in milliseconds) between two consecutive checks of the file.
+     * </p>
+     *
+     * @return the check interval in milliseconds
+     */
+    public long getCheckIntervalMs() {
+        return this.checkIntervalMs;
+    }
+
+
+    /**
+     * <p>
+     *   Returns true. Templates are always considered cacheable using this
+     *   validity implementation.
+     * </p>
+     *
+     * @return true
+     */
+    public boolean isCacheable() {
+        return true;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the template resolution can still be considered valid, i.e. whether
+     *   the file has not been modified (or removed) since this object was created.
+     * </p>
+     *
+     * @return whether the (cached) template resolution can still be considered valid.
+     */
+    public boolean isCacheStillValid() {
+        if (this.modified) {
+            return false;
+        }
+        final long currentTimeInMillis = System.currentTimeMillis();
+        if (currentTimeInMillis < this.nextCheckTimeInMillis) {
+            return true;
+        }
+        // Several threads might perform this check at the same time, but that is harmless
+        this.nextCheckTimeInMillis = currentTimeInMillis + this.checkIntervalMs;
+        if (this.file.lastModified() != this.lastModified || this.file.length() != this.length) {
+            this.modified = true;
+            return false;
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * <p>
+ *   Converts cache values to and from the binary form in which they are stored by
+ *   {@link OffHeapCache}.
+ * </p>
+ * <p>
+ *   Values are split in two parts: a (small) <i>heap part</i>, kept as a normal object in the
+ *   cache index, and the <i>serialized part</i>, written as bytes out of the GC-managed heap. The
+ *   heap part is meant for whatever cannot (or need not) be serialized, like references to
+ *   configuration objects.
+ * </p>
+ * <p>
+ *   Implementations of this interface must be <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ * @param <V> the type of the cache values
+ */
+public interface ICacheEntrySerializer<V> {
+
+    /**
+     * <p>
+     *   Computes the part of the value that will be kept in the heap. Can be null.
+     * </p>
+     *
+     * @param value the value being cached
+     * @return the heap part of the value
+     */
+    public Object computeHeapPart(final V value);
+
+    /**
+     * <p>
+     *   Writes the serialized part of the value.
+     * </p>
+     *
+     * @param value the value being cached
+     * @param output the output to write to
+     * @throws IOException if the value cannot be serialized
+     */
+    public void serialize(final V value, final DataOutputStream output) throws IOException;
+
+    /**
+     * <p>
+     *   Creates a new value from its heap part and its serialized part.
+     * </p>
+     *
+     * @param heapPart the heap part, as returned by {@link #computeHeapPart(Object)}
+     * @param serialized the serialized part, positioned at its first byte. It is read-only and not shared
+     *                   with other calls, so it can be retained by the value for decoding it lazily.
+     * @return the new value
+     * @throws IOException if the value cannot be deserialized
+     */
+    public V deserialize(final Object heapPart, final ByteBuffer serialized) throws IOException;
+
+}
@@ -21,9 +21,11 @@
 
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.thymeleaf.engine.ParsedFragmentMarkup;
 import org.thymeleaf.engine.ParsedTemplateMarkup;
+import org.thymeleaf.engine.RenderedTemplateOutput;
 
 
 /**
@@ -38,7 +40,7 @@
  *   is requested).
  * </p>
  * <p>
- *   Four caches are predefined:
+ *   Six caches are predefined:
  * </p>
  * <ul>
  *   <li>A <b>template cache</b>, used for storing parsed templates referenced
@@ -55,9 +57,15 @@
  *       of different classes (referenced by their String representation), prefixes are
  *       normally applied to the String keys in order to being able to differentiate these
  *       differente classes when retrieving cache entries.</li>
+ *   <li>A <b>fragment output cache</b>, used for storing the already-rendered output of
+ *       template fragments (element subtrees) that have been explicitly marked as cacheable
+ *       in templates, referenced by a key computed from the template itself.</li>
+ *   <li>A <b>template output cache</b>, used for storing the already-rendered output of
+ *       whole templates, referenced by template name, markup selectors, locale and the
+ *       values of a declared set of context variables. This cache is <i>opt-in</i>.</li>
  * </ul>
  * <p>
- *   Only these four caches are needed by the template engine when the <i>standard</i> dialects
+ *   Only these six caches are needed by the template engine when the <i>standard</i> dialects
  *   are being used, but users might want to define new dialects and use new types of caches,
  *   which can be provided by the cache manager using the {@link #getSpecificCache(String)}
  *   method.
@@ -146,6 +154,67 @@ public interface ICacheManager {
      */
     public ICache<String,Object> getExpressionCache();
 
+
+    /**
+     * <p>
+     *   Returns the cache of rendered fragment output.
+     * </p>
+     * <p>
+     *   This cache stores the output (as a <tt>char[]</tt>) resulting from the complete processing
+     *   of element subtrees that have been marked as cacheable at the templates (e.g. by means of
+     *   the <tt>th:cache</tt> attribute in the Standard Dialects), so that subsequent executions
+     *   can simply write the cached output instead of processing the subtree again.
+     * </p>
+     * <p>
+     *   Keys are computed from the name of the template containing the cached element, the
+     *   value of the key expression declared at the template and the locale being used.
+     * </p>
+     *
+     * @return the cache of rendered fragment output
+     * @since 3.0.0
+     */
+    public ICache<String,char[]> getFragmentOutputCache();
+
+
+    /**
+     * <p>
+     *   Returns the cache of rendered template output.
+     * </p>
+     * <p>
+     *   This cache stores the complete output resulting from processing a template, so that
+     *   subsequent executions with the same inputs can simply write it instead of processing
+     *   the template again. Given this is only correct for templates whose output depends only
+     *   on the template name, markup selectors, locale and the context variables returned by
+     *   {@link #getTemplateOutputCacheKeyVariableNames()}, this cache is meant to be <i>opt-in</i>
+     *   (i.e. implementations should return null unless explicitly configured to use it).
+     * </p>
+     *
+     * @return the cache of rendered template output
+     * @since 3.0.0
+     */
+    public ICache<String,RenderedTemplateOutput> getTemplateOutputCache();
+
+
+    /**
+     * <p>
+     *   Returns the names of the context variables whose values will be used, along with the
+     *   template name, the markup selectors and the locale, for computing the keys of the
+     *   template output cache (see {@link #getTemplateOutputCache()}).
+     * </p>
+     * <p>
+     *   Only values whose string form identifies them are used in keys: <tt>null</tt>, strings,
+     *   numbers, booleans, characters, enums and locales. If any of these variables has a value of a
+     *   different type, the output of the template will not be cached for that execution.
+     * </p>
+     * <p>
+     *   Might return null if no context variables are to be used.
+     * </p>
+     *
+     * @return the names of the context variables used for computing template output cache keys
+     * @since 3.0.0
+     */
+    public Set<String> getTemplateOutputCacheKeyVariableNames();
+
     
     /**
      * <p>
@@ -153,8 +222,8 @@ public interface ICacheManager {
      * </p>
      * <p>
      *   User-defined dialects might make use of additional caches (besides <i>template</i>,
-     *   <i>fragment</i>, <i>message</i> and <i>expression</i>) defined at custom-made
-     *   implementations of this interface, and they should use this method
+     *   <i>fragment</i>, <i>message</i>, <i>expression</i>, <i>fragment output</i> and <i>template output</i>)
+     *   defined at custom-made implementations of this interface, and they should use this method
      *   to retrieve them by their name.
      * </p>
      *
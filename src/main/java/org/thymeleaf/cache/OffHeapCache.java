@@ -0,0 +1,432 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Implementation of {@link ICache} that stores its values in serialized form in direct
+ *   {@link ByteBuffer}s, i.e. out of the GC-managed heap, keeping only a small index (key,
+ *   heap part of the value, buffer reference) in the heap.
+ * </p>
+ * <p>
+ *   Values are converted to and from their serialized form by an {@link ICacheEntrySerializer}. So that
+ *   hits on frequently used entries do not need to decode them again and again, a small number of decoded
+ *   values (the most recently used ones, see <tt>maxDecodedSize</tt>) are also kept in the heap and returned
+ *   as-is while their serialized entry is not replaced or removed. Only the rest of the entries, which would
+ *   otherwise fill the old generation with object graphs that are rarely used, pay the cost of being decoded
+ *   at every hit.
+ * </p>
+ * <p>
+ *   How much work decoding costs depends on the serializer: it might decode the complete value at
+ *   {@link ICacheEntrySerializer#deserialize(Object, ByteBuffer)}, or only wrap the buffer it receives
+ *   (which is read-only and belongs to the returned value) and decode it on first use.
+ * </p>
+ * <p>
+ *   Size can be limited both by number of entries and by total serialized bytes. When any of these limits is
+ *   exceeded, least-recently-used entries are evicted. Note the memory of direct buffers is returned to the
+ *   operating system when their (small) heap objects are collected, and its total amount is capped by the
+ *   <tt>-XX:MaxDirectMemorySize</tt> JVM option.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ * @param <K> The type of the cache keys
+ * @param <V> The type of the cache values
+ */
+public final class OffHeapCache<K, V> implements ICache<K,V> {
+
+
+    private final String name;
+    private final int maxSize;
+    private final long maxBytes;
+    private final int maxDecodedSize;
+    private final ICacheEntrySerializer<V> serializer;
+    private final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker;
+
+    private final boolean traceExecution;
+    private final Logger logger;
+
+    private final LinkedHashMap<K,OffHeapCacheEntry> index;
+    private final LinkedHashMap<K,DecodedEntry<V>> decoded; // might be null! (= no decoded values kept)
+    private long totalBytes;
+
+
+
+
+    public OffHeapCache(final String name, final int initialCapacity, final int maxSize, final long maxBytes,
+            final int maxDecodedSize, final ICacheEntrySerializer<V> serializer,
+            final ICacheEntryValidityChecker<? super K, ? super V> entryValidityChecker,
+            final Logger logger) {
+
+        super();
+
+        Validate.notEmpty(name, "Name cannot be null or empty");
+        Validate.isTrue(initialCapacity > 0, "Initial capacity must be > 0");
+        Validate.isTrue(maxSize != 0, "Cache max size must be either -1 (no limit) or > 0");
+        Validate.isTrue(maxBytes != 0L, "Cache max bytes must be either -1 (no limit) or > 0");
+        Validate.isTrue(maxDecodedSize >= 0, "Cache max decoded size cannot be negative");
+        Validate.notNull(serializer, "Serializer cannot be null");
+
+        this.name = name;
+        this.maxSize = maxSize;
+        this.maxBytes = maxBytes;
+        this.maxDecodedSize = maxDecodedSize;
+        this.serializer = serializer;
+        this.entryValidityChecker = entryValidityChecker;
+
+        this.logger = logger;
+        this.traceExecution = (logger != null && logger.isTraceEnabled());
+
+        // Access-ordered, so that iteration starts at the least-recently-used entry
+        this.index = new LinkedHashMap<K, OffHeapCacheEntry>(initialCapacity, 0.75f, true);
+        // Also access-ordered, evicted independently from the index (all decoded values are also in the index)
+        this.decoded =
+                (maxDecodedSize == 0? null :
+                        new LinkedHashMap<K, DecodedEntry<V>>(Math.min(initialCapacity, maxDecodedSize), 0.75f, true));
+        this.totalBytes = 0L;
+
+        if (this.logger != null) {
+            this.logger.debug("[THYMELEAF][CACHE_INITIALIZE] Initializing off-heap cache {}. Max size: {}. Max bytes: {}. Max decoded size: {}.",
+                    new Object[] {this.name, Integer.valueOf(this.maxSize), Long.valueOf(this.maxBytes), Integer.valueOf(this.maxDecodedSize)});
+        }
+
+    }
+
+
+
+
+    // -----
+
+
+
+    public void put(final K key, final V value) {
+
+        final Object heapPart = this.serializer.computeHeapPart(value);
+
+        final ByteBuffer serialized;
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+            final DataOutputStream output = new DataOutputStream(bytes);
+            this.serializer.serialize(value, output);
+            output.flush();
+            final byte[] byteArray = bytes.toByteArray();
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(byteArray.length);
+            buffer.put(byteArray);
+            buffer.flip();
+            serialized = buffer.asReadOnlyBuffer();
+        } catch (final Exception e) {
+            // Not being able to cache a value is never fatal: it will simply be computed again next time
+            if (this.logger != null) {
+                this.logger.warn(
+                        "[THYMELEAF][" + TemplateEngine.threadIndex() + "] Value for key \"" + key + "\" could not be " +
+                        "serialized into cache \"" + this.name + "\"", e);
+            }
+            return;
+        }
+
+        if (this.maxBytes > 0L && serialized.capacity() > this.maxBytes) {
+            if (this.traceExecution) {
+                this.logger.trace(
+                        "[THYMELEAF][{}][{}][CACHE_SKIP] Not adding entry in cache \"{}\" for key \"{}\": its {} bytes exceed max bytes.",
+                        new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key, Integer.valueOf(serialized.capacity())});
+            }
+            return;
+        }
+
+        final OffHeapCacheEntry entry = new OffHeapCacheEntry(heapPart, serialized);
+
+        final int newSize;
+        synchronized (this.index) {
+
+            final OffHeapCacheEntry previous = this.index.put(key, entry);
+            if (previous != null) {
+                this.totalBytes -= previous.serialized.capacity();
+                if (this.decoded != null) {
+                    this.decoded.remove(key);
+                }
+            }
+            this.totalBytes += serialized.capacity();
+
+            final Iterator<Map.Entry<K,OffHeapCacheEntry>> entries = this.index.entrySet().iterator();
+            while (entries.hasNext() &&
+                    ((this.maxSize > 0 && this.index.size() > this.maxSize) ||
+                     (this.maxBytes > 0L && this.totalBytes > this.maxBytes))) {
+                final Map.Entry<K,OffHeapCacheEntry> eldest = entries.next();
+                entries.remove();
+                this.totalBytes -= eldest.getValue().serialized.capacity();
+                if (this.decoded != null) {
+                    this.decoded.remove(eldest.getKey());
+                }
+                if (this.traceExecution) {
+                    this.logger.trace(
+                            "[THYMELEAF][{}][{}][CACHE_REMOVE] Max size exceeded for cache \"{}\". Removing entry for key \"{}\".",
+                            new Object[] {TemplateEngine.threadIndex(), this.name, this.name, eldest.getKey()});
+                }
+            }
+
+            newSize = this.index.size();
+
+        }
+
+        if (this.traceExecution) {
+            this.logger.trace(
+                    "[THYMELEAF][{}][{}][CACHE_ADD][{}] Adding cache entry in cache \"{}\" for key \"{}\" ({} bytes off-heap). New size is {}.",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, Integer.valueOf(newSize), this.name, key,
+                            Integer.valueOf(serialized.capacity()), Integer.valueOf(newSize)});
+        }
+
+    }
+
+
+
+    public V get(final K key) {
+        return get(key, this.entryValidityChecker);
+    }
+
+
+
+    public V get(final K key, final ICacheEntryValidityChecker<? super K, ? super V> validityChecker) {
+
+        final OffHeapCacheEntry entry;
+        final DecodedEntry<V> decodedEntry;
+        synchronized (this.index) {
+            entry = this.index.get(key);
+            decodedEntry = (entry == null || this.decoded == null? null : this.decoded.get(key));
+        }
+
+        if (entry == null) {
+            if (this.traceExecution) {
+                this.logger.trace(
+                        "[THYMELEAF][{}][{}][CACHE_MISS] Cache miss in cache \"{}\" for key \"{}\".",
+                        new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+            }
+            return null;
+        }
+
+        // A decoded value is only used if it was decoded from the entry currently in the index
+        final boolean alreadyDecoded = (decodedEntry != null && decodedEntry.source == entry);
+
+        V value;
+        if (alreadyDecoded) {
+            value = decodedEntry.value;
+        } else {
+            try {
+                // Buffer is duplicated so that each reader gets its own position
+                value = this.serializer.deserialize(entry.heapPart, entry.serialized.duplicate());
+            } catch (final Exception e) {
+                if (this.logger != null) {
+                    this.logger.warn(
+                            "[THYMELEAF][" + TemplateEngine.threadIndex() + "] Value for key \"" + key + "\" could not be " +
+                            "deserialized from cache \"" + this.name + "\"", e);
+                }
+                value = null;
+            }
+        }
+
+        if (value == null ||
+                (validityChecker != null && !validityChecker.checkIsValueStillValid(key, value, entry.creationTimeInMillis))) {
+            remove(key, entry);
+            if (this.traceExecution) {
+                this.logger.trace(
+                        "[THYMELEAF][{}][{}][CACHE_MISS] Cache miss in cache \"{}\" for key \"{}\" (entry is not valid anymore).",
+                        new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+            }
+            return null;
+        }
+
+        if (!alreadyDecoded && this.decoded != null) {
+            keepDecoded(key, entry, value);
+        }
+
+        if (this.traceExecution) {
+            this.logger.trace(
+                    "[THYMELEAF][{}][{}][CACHE_HIT] Cache hit in cache \"{}\" for key \"{}\".",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+        }
+
+        return value;
+
+    }
+
+
+
+    // Only keeps the decoded value if its entry has not been replaced or removed in the meantime
+    private void keepDecoded(final K key, final OffHeapCacheEntry entry, final V value) {
+        synchronized (this.index) {
+            if (this.index.get(key) != entry) {
+                return;
+            }
+            this.decoded.put(key, new DecodedEntry<V>(entry, value));
+            if (this.decoded.size() > this.maxDecodedSize) {
+                final Iterator<K> decodedKeys = this.decoded.keySet().iterator();
+                decodedKeys.next();
+                decodedKeys.remove();
+            }
+        }
+    }
+
+
+
+    public void clear() {
+
+        synchronized (this.index) {
+            this.index.clear();
+            if (this.decoded != null) {
+                this.decoded.clear();
+            }
+            this.totalBytes = 0L;
+        }
+
+        if (this.traceExecution) {
+            this.logger.trace(
+                    "[THYMELEAF][{}][*][{}][CACHE_REMOVE][0] Removing ALL cache entries in cache \"{}\". New size is 0.",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, this.name});
+        }
+
+    }
+
+
+
+    public void clearKey(final K key) {
+
+        synchronized (this.index) {
+            final OffHeapCacheEntry removed = this.index.remove(key);
+            if (removed != null) {
+                this.totalBytes -= removed.serialized.capacity();
+            }
+            if (this.decoded != null) {
+                this.decoded.remove(key);
+            }
+        }
+
+        if (this.traceExecution) {
+            this.logger.trace(
+                    "[THYMELEAF][{}][*][{}][CACHE_REMOVE] Removed cache entry in cache \"{}\" for key \"{}\".",
+                    new Object[] {TemplateEngine.threadIndex(), this.name, this.name, key});
+        }
+
+    }
+
+
+
+    // Only removes the entry if it has not been replaced in the meantime
+    private void remove(final K key, final OffHeapCacheEntry entry) {
+        synchronized (this.index) {
+            if (this.index.get(key) == entry) {
+                this.index.remove(key);
+                this.totalBytes -= entry.serialized.capacity();
+                if (this.decoded != null) {
+                    this.decoded.remove(key);
+                }
+            }
+        }
+    }
+
+
+
+    // -----
+
+
+
+    public String getName() {
+        return this.name;
+    }
+
+    public boolean hasMaxSize() {
+        return (this.maxSize > 0);
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public int getMaxDecodedSize() {
+        return this.maxDecodedSize;
+    }
+
+    public int size() {
+        synchronized (this.index) {
+            return this.index.size();
+        }
+    }
+
+    public long getTotalBytes() {
+        synchronized (this.index) {
+            return this.totalBytes;
+        }
+    }
+
+
+
+
+    private static final class OffHeapCacheEntry {
+
+        final Object heapPart;
+        final ByteBuffer serialized;
+        final long creationTimeInMillis;
+
+        OffHeapCacheEntry(final Object heapPart, final ByteBuffer serialized) {
+            super();
+            this.heapPart = heapPart;
+            this.serialized = serialized;
+            this.creationTimeInMillis = System.currentTimeMillis();
+        }
+
+    }
+
+
+
+
+    private static final class DecodedEntry<V> {
+
+        final Object source;
+        final V value;
+
+        DecodedEntry(final Object source, final V value) {
+            super();
+            this.source = source;
+            this.value = value;
+        }
+
+    }
+
+
+}
@@ -0,0 +1,116 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ *   Implementation of {@link ICacheEntryValidity} that uses a TTL (time-to-live) like
+ *   {@link TTLCacheEntryValidity}, but allowing <i>stale-while-revalidate</i> (refresh-ahead)
+ *   behaviour: once the TTL has expired, cache entries are still considered valid during one more TTL
+ *   period, so that they can keep being used while a refreshed version is created in the background
+ *   (see {@link #isRefreshNeeded()} and {@link #claimRefresh()}).
+ * </p>
+ * <p>
+ *   If nothing refreshes the entry during that additional period (or if refreshing it fails), the entry
+ *   will be considered invalid, just as it would happen with {@link TTLCacheEntryValidity}.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public class RefreshAheadTTLCacheEntryValidity
+        extends TTLCacheEntryValidity {
+
+    private final long staleLimitTimeInMillis;
+    private final AtomicBoolean refreshClaimed;
+    private volatile boolean refreshFailed;
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this validity implementation.
+     * </p>
+     *
+     * @param cacheTTLMs the TTL to be applied to the template resolution.
+     */
+    public RefreshAheadTTLCacheEntryValidity(final long cacheTTLMs) {
+        super(cacheTTLMs);
+        this.staleLimitTimeInMillis = System.currentTimeMillis() + (2 * cacheTTLMs);
+        this.refreshClaimed = new AtomicBoolean(false);
+        this.refreshFailed = false;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the template resolution can still be considered valid, which will happen
+     *   until twice the established TTL has passed since this object was created (unless a refresh
+     *   operation failed).
+     * </p>
+     *
+     * @return whether the (cached) template resolution can still be considered valid.
+     */
+    @Override
+    public boolean isCacheStillValid() {
+        return !this.refreshFailed && System.currentTimeMillis() < this.staleLimitTimeInMillis;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether the established TTL has expired, and therefore the corresponding
+     *   cache entry should be refreshed.
+     * </p>
+     *
+     * @return whether a refresh is needed.
+     */
+    public boolean isRefreshNeeded() {
+        return !super.isCacheStillValid();
+    }
+
+
+    /**
+     * <p>
+     *   Checks whether a refresh is needed and, if so, claims it so that no other callers will
+     *   perform it again.
+     * </p>
+     *
+     * @return true if a refresh is needed and the caller is now in charge of performing it.
+     */
+    public boolean claimRefresh() {
+        return isRefreshNeeded() && this.refreshClaimed.compareAndSet(false, true);
+    }
+
+
+    /**
+     * <p>
+     *   Signals that the refresh operation failed, so that the corresponding cache entry
+     *   will be considered invalid from now on.
+     * </p>
+     */
+    public void markRefreshFailed() {
+        this.refreshFailed = true;
+    }
+
+}
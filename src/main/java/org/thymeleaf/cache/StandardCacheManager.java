@@ -19,13 +19,19 @@
  */
 package org.thymeleaf.cache;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Properties;
+import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.engine.ParsedFragmentMarkup;
+import org.thymeleaf.engine.ParsedFragmentMarkupSerializer;
 import org.thymeleaf.engine.ParsedTemplateMarkup;
+import org.thymeleaf.engine.ParsedTemplateMarkupSerializer;
+import org.thymeleaf.engine.RenderedTemplateOutput;
 
 
 /**
@@ -61,6 +67,17 @@
  *       which will be applied on each entry upon retrieval from cache in order to ensure
  *       it is still valid and can be used.
  * </ul>
+ * <p>
+ *   The <i>template</i> and <i>fragment</i> caches can also be configured to store their entries
+ *   <i>off-heap</i> (see {@link OffHeapCache}), optionally limiting the total amount of bytes they can
+ *   take and the amount of (most recently used) decoded values kept in the heap in front of them. In this
+ *   case, soft references are not used for these caches.
+ * </p>
+ * <p>
+ *   Note the <i>template output cache</i> is disabled by default (its maximum size is <tt>0</tt>), as
+ *   it should only be used when the output of the processed templates depends exclusively on the
+ *   context variables configured by means of {@link #setTemplateOutputCacheKeyVariableNames(Set)}.
+ * </p>
  *
  * @author Daniel Fern&aacute;ndez
  *
@@ -89,6 +106,21 @@ public class StandardCacheManager extends AbstractCacheManager {
      * Default template cache "use soft references" flag: true
      */
     public static final boolean DEFAULT_TEMPLATE_CACHE_USE_SOFT_REFERENCES = true;
+
+    /**
+     * Default template cache "use off-heap storage" flag: false
+     */
+    public static final boolean DEFAULT_TEMPLATE_CACHE_USE_OFF_HEAP_STORAGE = false;
+
+    /**
+     * Default template cache maximum off-heap bytes: -1 (no limit)
+     */
+    public static final long DEFAULT_TEMPLATE_CACHE_MAX_OFF_HEAP_BYTES = -1L;
+
+    /**
+     * Default template cache maximum amount of decoded values kept in the heap when using off-heap storage: 50
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_MAX_DECODED_SIZE = 50;
     
     /**
      * Default template cache logger name: null (default behaviour = org.thymeleaf.TemplateEngine.cache.TEMPLATE_CACHE)
@@ -121,6 +153,21 @@ public class StandardCacheManager extends AbstractCacheManager {
      * Default fragment cache "use soft references" flag: true
      */
     public static final boolean DEFAULT_FRAGMENT_CACHE_USE_SOFT_REFERENCES = true;
+
+    /**
+     * Default fragment cache "use off-heap storage" flag: false
+     */
+    public static final boolean DEFAULT_FRAGMENT_CACHE_USE_OFF_HEAP_STORAGE = false;
+
+    /**
+     * Default fragment cache maximum off-heap bytes: -1 (no limit)
+     */
+    public static final long DEFAULT_FRAGMENT_CACHE_MAX_OFF_HEAP_BYTES = -1L;
+
+    /**
+     * Default fragment cache maximum amount of decoded values kept in the heap when using off-heap storage: 50
+     */
+    public static final int DEFAULT_FRAGMENT_CACHE_MAX_DECODED_SIZE = 50;
     
     /**
      * Default fragment cache logger name: null (default behaviour = org.thymeleaf.TemplateEngine.cache.FRAGMENT_CACHE)
@@ -195,6 +242,70 @@ public class StandardCacheManager extends AbstractCacheManager {
      */
     public static final ICacheEntryValidityChecker<String,Object> DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER = null;
 
+
+    /**
+     * Default fragment output cache name: "FRAGMENT_OUTPUT_CACHE"
+     */
+    public static final String DEFAULT_FRAGMENT_OUTPUT_CACHE_NAME = "FRAGMENT_OUTPUT_CACHE";
+
+    /**
+     * Default fragment output cache initial size: 20
+     */
+    public static final int DEFAULT_FRAGMENT_OUTPUT_CACHE_INITIAL_SIZE = 20;
+
+    /**
+     * Default fragment output cache maximum size: 100
+     */
+    public static final int DEFAULT_FRAGMENT_OUTPUT_CACHE_MAX_SIZE = 100;
+
+    /**
+     * Default fragment output cache "use soft references" flag: true
+     */
+    public static final boolean DEFAULT_FRAGMENT_OUTPUT_CACHE_USE_SOFT_REFERENCES = true;
+
+    /**
+     * Default fragment output cache logger name: null (default behaviour = org.thymeleaf.TemplateEngine.cache.FRAGMENT_OUTPUT_CACHE)
+     */
+    public static final String DEFAULT_FRAGMENT_OUTPUT_CACHE_LOGGER_NAME = null;
+
+    /**
+     * Default fragment output cache validity checker: an instance of {@link TTLCacheEntryValidityChecker}
+     * with a TTL of 5 minutes.
+     */
+    public static final ICacheEntryValidityChecker<String,char[]> DEFAULT_FRAGMENT_OUTPUT_CACHE_VALIDITY_CHECKER = new TTLCacheEntryValidityChecker<String,char[]>(300000L);
+
+
+
+    /**
+     * Default template output cache name: "TEMPLATE_OUTPUT_CACHE"
+     */
+    public static final String DEFAULT_TEMPLATE_OUTPUT_CACHE_NAME = "TEMPLATE_OUTPUT_CACHE";
+
+    /**
+     * Default template output cache initial size: 10
+     */
+    public static final int DEFAULT_TEMPLATE_OUTPUT_CACHE_INITIAL_SIZE = 10;
+
+    /**
+     * Default template output cache maximum size: 0 (disabled, must be explicitly enabled)
+     */
+    public static final int DEFAULT_TEMPLATE_OUTPUT_CACHE_MAX_SIZE = 0;
+
+    /**
+     * Default template output cache "use soft references" flag: true
+     */
+    public static final boolean DEFAULT_TEMPLATE_OUTPUT_CACHE_USE_SOFT_REFERENCES = true;
+
+    /**
+     * Default template output cache logger name: null (default behaviour = org.thymeleaf.TemplateEngine.cache.TEMPLATE_OUTPUT_CACHE)
+     */
+    public static final String DEFAULT_TEMPLATE_OUTPUT_CACHE_LOGGER_NAME = null;
+
+    /**
+     * Default template output cache validity checker: an instance of {@link StandardRenderedTemplateOutputEntryValidator}.
+     */
+    public static final ICacheEntryValidityChecker<String,RenderedTemplateOutput> DEFAULT_TEMPLATE_OUTPUT_CACHE_VALIDITY_CHECKER = new StandardRenderedTemplateOutputEntryValidator();
+
     
     
     
@@ -202,6 +313,9 @@ public class StandardCacheManager extends AbstractCacheManager {
     private int templateCacheInitialSize = DEFAULT_TEMPLATE_CACHE_INITIAL_SIZE;
     private int templateCacheMaxSize = DEFAULT_TEMPLATE_CACHE_MAX_SIZE;
     private boolean templateCacheUseSoftReferences = DEFAULT_TEMPLATE_CACHE_USE_SOFT_REFERENCES;
+    private boolean templateCacheUseOffHeapStorage = DEFAULT_TEMPLATE_CACHE_USE_OFF_HEAP_STORAGE;
+    private long templateCacheMaxOffHeapBytes = DEFAULT_TEMPLATE_CACHE_MAX_OFF_HEAP_BYTES;
+    private int templateCacheMaxDecodedSize = DEFAULT_TEMPLATE_CACHE_MAX_DECODED_SIZE;
     private String templateCacheLoggerName = DEFAULT_TEMPLATE_CACHE_LOGGER_NAME;
     private ICacheEntryValidityChecker<String,ParsedTemplateMarkup> templateCacheValidityChecker = DEFAULT_TEMPLATE_CACHE_VALIDITY_CHECKER;
     
@@ -209,6 +323,9 @@ public class StandardCacheManager extends AbstractCacheManager {
     private int fragmentCacheInitialSize = DEFAULT_FRAGMENT_CACHE_INITIAL_SIZE;
     private int fragmentCacheMaxSize = DEFAULT_FRAGMENT_CACHE_MAX_SIZE;
     private boolean fragmentCacheUseSoftReferences = DEFAULT_FRAGMENT_CACHE_USE_SOFT_REFERENCES;
+    private boolean fragmentCacheUseOffHeapStorage = DEFAULT_FRAGMENT_CACHE_USE_OFF_HEAP_STORAGE;
+    private long fragmentCacheMaxOffHeapBytes = DEFAULT_FRAGMENT_CACHE_MAX_OFF_HEAP_BYTES;
+    private int fragmentCacheMaxDecodedSize = DEFAULT_FRAGMENT_CACHE_MAX_DECODED_SIZE;
     private String fragmentCacheLoggerName = DEFAULT_FRAGMENT_CACHE_LOGGER_NAME;
     private ICacheEntryValidityChecker<String,ParsedFragmentMarkup> fragmentCacheValidityChecker = DEFAULT_FRAGMENT_CACHE_VALIDITY_CHECKER;
    
@@ -225,6 +342,21 @@ public class StandardCacheManager extends AbstractCacheManager {
     private boolean expressionCacheUseSoftReferences = DEFAULT_EXPRESSION_CACHE_USE_SOFT_REFERENCES;
     private String expressionCacheLoggerName = DEFAULT_EXPRESSION_CACHE_LOGGER_NAME;
     private ICacheEntryValidityChecker<String,Object> expressionCacheValidityChecker = DEFAULT_EXPRESSION_CACHE_VALIDITY_CHECKER;
+
+    private String fragmentOutputCacheName = DEFAULT_FRAGMENT_OUTPUT_CACHE_NAME;
+    private int fragmentOutputCacheInitialSize = DEFAULT_FRAGMENT_OUTPUT_CACHE_INITIAL_SIZE;
+    private int fragmentOutputCacheMaxSize = DEFAULT_FRAGMENT_OUTPUT_CACHE_MAX_SIZE;
+    private boolean fragmentOutputCacheUseSoftReferences = DEFAULT_FRAGMENT_OUTPUT_CACHE_USE_SOFT_REFERENCES;
+    private String fragmentOutputCacheLoggerName = DEFAULT_FRAGMENT_OUTPUT_CACHE_LOGGER_NAME;
+    private ICacheEntryValidityChecker<String,char[]> fragmentOutputCacheValidityChecker = DEFAULT_FRAGMENT_OUTPUT_CACHE_VALIDITY_CHECKER;
+
+    private String templateOutputCacheName = DEFAULT_TEMPLATE_OUTPUT_CACHE_NAME;
+    private int templateOutputCacheInitialSize = DEFAULT_TEMPLATE_OUTPUT_CACHE_INITIAL_SIZE;
+    private int templateOutputCacheMaxSize = DEFAULT_TEMPLATE_OUTPUT_CACHE_MAX_SIZE;
+    private boolean templateOutputCacheUseSoftReferences = DEFAULT_TEMPLATE_OUTPUT_CACHE_USE_SOFT_REFERENCES;
+    private String templateOutputCacheLoggerName = DEFAULT_TEMPLATE_OUTPUT_CACHE_LOGGER_NAME;
+    private ICacheEntryValidityChecker<String,RenderedTemplateOutput> templateOutputCacheValidityChecker = DEFAULT_TEMPLATE_OUTPUT_CACHE_VALIDITY_CHECKER;
+    private Set<String> templateOutputCacheKeyVariableNames = Collections.emptySet();
     
     
     
@@ -240,6 +372,12 @@ protected final ICache<String, ParsedTemplateMarkup> initializeTemplateCache() {
         if (maxSize == 0) {
             return null;
         }
+        if (getTemplateCacheUseOffHeapStorage()) {
+            return new OffHeapCache<String, ParsedTemplateMarkup>(
+                    getTemplateCacheName(), getTemplateCacheInitialSize(), maxSize,
+                    getTemplateCacheMaxOffHeapBytes(), getTemplateCacheMaxDecodedSize(), new ParsedTemplateMarkupSerializer(),
+                    getTemplateCacheValidityChecker(), getTemplateCacheLogger());
+        }
         return new StandardCache<String, ParsedTemplateMarkup>(
                 getTemplateCacheName(), getTemplateCacheUseSoftReferences(), 
                 getTemplateCacheInitialSize(), maxSize, 
@@ -252,6 +390,12 @@ protected final ICache<String, ParsedFragmentMarkup> initializeFragmentCache() {
         if (maxSize == 0) {
             return null;
         }
+        if (getFragmentCacheUseOffHeapStorage()) {
+            return new OffHeapCache<String, ParsedFragmentMarkup>(
+                    getFragmentCacheName(), getFragmentCacheInitialSize(), maxSize,
+                    getFragmentCacheMaxOffHeapBytes(), getFragmentCacheMaxDecodedSize(), new ParsedFragmentMarkupSerializer(),
+                    getFragmentCacheValidityChecker(), getFragmentCacheLogger());
+        }
         return new StandardCache<String, ParsedFragmentMarkup>(
                 getFragmentCacheName(), getFragmentCacheUseSoftReferences(), 
                 getFragmentCacheInitialSize(), maxSize, 
@@ -283,6 +427,33 @@ protected final ICache<String, Object> initializeExpressionCache() {
                 getExpressionCacheInitialSize(), maxSize, 
                 getExpressionCacheValidityChecker(), getExpressionCacheLogger());
     }
+
+
+    @Override
+    protected final ICache<String, char[]> initializeFragmentOutputCache() {
+        final int maxSize = getFragmentOutputCacheMaxSize();
+        if (maxSize == 0) {
+            return null;
+        }
+        return new StandardCache<String, char[]>(
+                getFragmentOutputCacheName(), getFragmentOutputCacheUseSoftReferences(),
+                getFragmentOutputCacheInitialSize(), maxSize,
+                getFragmentOutputCacheValidityChecker(), getFragmentOutputCacheLogger());
+    }
+
+
+
+    @Override
+    protected final ICache<String, RenderedTemplateOutput> initializeTemplateOutputCache() {
+        final int maxSize = getTemplateOutputCacheMaxSize();
+        if (maxSize == 0) {
+            return null;
+        }
+        return new StandardCache<String, RenderedTemplateOutput>(
+                getTemplateOutputCacheName(), getTemplateOutputCacheUseSoftReferences(),
+                getTemplateOutputCacheInitialSize(), maxSize,
+                getTemplateOutputCacheValidityChecker(), getTemplateOutputCacheLogger());
+    }
     
     
     
@@ -294,6 +465,18 @@ public String getTemplateCacheName() {
     public boolean getTemplateCacheUseSoftReferences() {
         return this.templateCacheUseSoftReferences;
     }
+
+    public boolean getTemplateCacheUseOffHeapStorage() {
+        return this.templateCacheUseOffHeapStorage;
+    }
+
+    public long getTemplateCacheMaxOffHeapBytes() {
+        return this.templateCacheMaxOffHeapBytes;
+    }
+
+    public int getTemplateCacheMaxDecodedSize() {
+        return this.templateCacheMaxDecodedSize;
+    }
     
     public int getTemplateCacheInitialSize() {
         return this.templateCacheInitialSize;
@@ -329,6 +512,18 @@ public String getFragmentCacheName() {
     public boolean getFragmentCacheUseSoftReferences() {
         return this.fragmentCacheUseSoftReferences;
     }
+
+    public boolean getFragmentCacheUseOffHeapStorage() {
+        return this.fragmentCacheUseOffHeapStorage;
+    }
+
+    public long getFragmentCacheMaxOffHeapBytes() {
+        return this.fragmentCacheMaxOffHeapBytes;
+    }
+
+    public int getFragmentCacheMaxDecodedSize() {
+        return this.fragmentCacheMaxDecodedSize;
+    }
     
     public int getFragmentCacheInitialSize() {
         return this.fragmentCacheInitialSize;
@@ -426,6 +621,81 @@ public final Logger getExpressionCacheLogger() {
 
 
 
+
+    public String getFragmentOutputCacheName() {
+        return this.fragmentOutputCacheName;
+    }
+
+    public boolean getFragmentOutputCacheUseSoftReferences() {
+        return this.fragmentOutputCacheUseSoftReferences;
+    }
+
+    public int getFragmentOutputCacheInitialSize() {
+        return this.fragmentOutputCacheInitialSize;
+    }
+
+    public int getFragmentOutputCacheMaxSize() {
+        return this.fragmentOutputCacheMaxSize;
+    }
+
+    public String getFragmentOutputCacheLoggerName() {
+        return this.fragmentOutputCacheLoggerName;
+    }
+
+    public ICacheEntryValidityChecker<String,char[]> getFragmentOutputCacheValidityChecker() {
+        return this.fragmentOutputCacheValidityChecker;
+    }
+
+    public final Logger getFragmentOutputCacheLogger() {
+        final String loggerName = getFragmentOutputCacheLoggerName();
+        if (loggerName != null) {
+            return LoggerFactory.getLogger(loggerName);
+        }
+        return LoggerFactory.getLogger(TemplateEngine.class.getName() + ".cache." + getFragmentOutputCacheName());
+    }
+
+
+
+
+
+    public String getTemplateOutputCacheName() {
+        return this.templateOutputCacheName;
+    }
+
+    public boolean getTemplateOutputCacheUseSoftReferences() {
+        return this.templateOutputCacheUseSoftReferences;
+    }
+
+    public int getTemplateOutputCacheInitialSize() {
+        return this.templateOutputCacheInitialSize;
+    }
+
+    public int getTemplateOutputCacheMaxSize() {
+        return this.templateOutputCacheMaxSize;
+    }
+
+    public String getTemplateOutputCacheLoggerName() {
+        return this.templateOutputCacheLoggerName;
+    }
+
+    public ICacheEntryValidityChecker<String,RenderedTemplateOutput> getTemplateOutputCacheValidityChecker() {
+        return this.templateOutputCacheValidityChecker;
+    }
+
+    public Set<String> getTemplateOutputCacheKeyVariableNames() {
+        return this.templateOutputCacheKeyVariableNames;
+    }
+
+    public final Logger getTemplateOutputCacheLogger() {
+        final String loggerName = getTemplateOutputCacheLoggerName();
+        if (loggerName != null) {
+            return LoggerFactory.getLogger(loggerName);
+        }
+        return LoggerFactory.getLogger(TemplateEngine.class.getName() + ".cache." + getTemplateOutputCacheName());
+    }
+
+
+
     
     
     public void setTemplateCacheName(final String templateCacheName) {
@@ -444,6 +714,18 @@ public void setTemplateCacheUseSoftReferences(final boolean templateCacheUseSoft
         this.templateCacheUseSoftReferences = templateCacheUseSoftReferences;
     }
 
+    public void setTemplateCacheUseOffHeapStorage(final boolean templateCacheUseOffHeapStorage) {
+        this.templateCacheUseOffHeapStorage = templateCacheUseOffHeapStorage;
+    }
+
+    public void setTemplateCacheMaxOffHeapBytes(final long templateCacheMaxOffHeapBytes) {
+        this.templateCacheMaxOffHeapBytes = templateCacheMaxOffHeapBytes;
+    }
+
+    public void setTemplateCacheMaxDecodedSize(final int templateCacheMaxDecodedSize) {
+        this.templateCacheMaxDecodedSize = templateCacheMaxDecodedSize;
+    }
+
     public void setTemplateCacheLoggerName(final String templateCacheLoggerName) {
         this.templateCacheLoggerName = templateCacheLoggerName;
     }
@@ -470,6 +752,18 @@ public void setFragmentCacheUseSoftReferences(final boolean fragmentCacheUseSoft
         this.fragmentCacheUseSoftReferences = fragmentCacheUseSoftReferences;
     }
 
+    public void setFragmentCacheUseOffHeapStorage(final boolean fragmentCacheUseOffHeapStorage) {
+        this.fragmentCacheUseOffHeapStorage = fragmentCacheUseOffHeapStorage;
+    }
+
+    public void setFragmentCacheMaxOffHeapBytes(final long fragmentCacheMaxOffHeapBytes) {
+        this.fragmentCacheMaxOffHeapBytes = fragmentCacheMaxOffHeapBytes;
+    }
+
+    public void setFragmentCacheMaxDecodedSize(final int fragmentCacheMaxDecodedSize) {
+        this.fragmentCacheMaxDecodedSize = fragmentCacheMaxDecodedSize;
+    }
+
     public void setFragmentCacheLoggerName(final String fragmentCacheLoggerName) {
         this.fragmentCacheLoggerName = fragmentCacheLoggerName;
     }
@@ -530,6 +824,68 @@ public void setExpressionCacheValidityChecker(final ICacheEntryValidityChecker<S
         this.expressionCacheValidityChecker = expressionCacheValidityChecker;
     }
 
+
+
+    public void setFragmentOutputCacheName(final String fragmentOutputCacheName) {
+        this.fragmentOutputCacheName = fragmentOutputCacheName;
+    }
+
+    public void setFragmentOutputCacheInitialSize(final int fragmentOutputCacheInitialSize) {
+        this.fragmentOutputCacheInitialSize = fragmentOutputCacheInitialSize;
+    }
+
+    public void setFragmentOutputCacheMaxSize(final int fragmentOutputCacheMaxSize) {
+        this.fragmentOutputCacheMaxSize = fragmentOutputCacheMaxSize;
+    }
+
+    public void setFragmentOutputCacheUseSoftReferences(final boolean fragmentOutputCacheUseSoftReferences) {
+        this.fragmentOutputCacheUseSoftReferences = fragmentOutputCacheUseSoftReferences;
+    }
+
+    public void setFragmentOutputCacheLoggerName(final String fragmentOutputCacheLoggerName) {
+        this.fragmentOutputCacheLoggerName = fragmentOutputCacheLoggerName;
+    }
+
+    public void setFragmentOutputCacheValidityChecker(final ICacheEntryValidityChecker<String, char[]> fragmentOutputCacheValidityChecker) {
+        this.fragmentOutputCacheValidityChecker = fragmentOutputCacheValidityChecker;
+    }
+
+
+
+
+    public void setTemplateOutputCacheName(final String templateOutputCacheName) {
+        this.templateOutputCacheName = templateOutputCacheName;
+    }
+
+    public void setTemplateOutputCacheInitialSize(final int templateOutputCacheInitialSize) {
+        this.templateOutputCacheInitialSize = templateOutputCacheInitialSize;
+    }
+
+    public void setTemplateOutputCacheMaxSize(final int templateOutputCacheMaxSize) {
+        this.templateOutputCacheMaxSize = templateOutputCacheMaxSize;
+    }
+
+    public void setTemplateOutputCacheUseSoftReferences(final boolean templateOutputCacheUseSoftReferences) {
+        this.templateOutputCacheUseSoftReferences = templateOutputCacheUseSoftReferences;
+    }
+
+    public void setTemplateOutputCacheLoggerName(final String templateOutputCacheLoggerName) {
+        this.templateOutputCacheLoggerName = templateOutputCacheLoggerName;
+    }
+
+    public void setTemplateOutputCacheValidityChecker(final ICacheEntryValidityChecker<String, RenderedTemplateOutput> templateOutputCacheValidityChecker) {
+        this.templateOutputCacheValidityChecker = templateOutputCacheValidityChecker;
+    }
+
+    public void setTemplateOutputCacheKeyVariableNames(final Set<String> templateOutputCacheKeyVariableNames) {
+        if (templateOutputCacheKeyVariableNames == null) {
+            this.templateOutputCacheKeyVariableNames = Collections.emptySet();
+        } else {
+            this.templateOutputCacheKeyVariableNames =
+                    Collections.unmodifiableSet(new LinkedHashSet<String>(templateOutputCacheKeyVariableNames));
+        }
+    }
+
     
     
     
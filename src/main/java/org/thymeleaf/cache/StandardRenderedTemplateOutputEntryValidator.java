@@ -0,0 +1,47 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+
+import org.thymeleaf.engine.RenderedTemplateOutput;
+
+/**
+ * 
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public final class StandardRenderedTemplateOutputEntryValidator
+        implements ICacheEntryValidityChecker<String,RenderedTemplateOutput> {
+
+    private static final long serialVersionUID = 4108729377341452337L;
+
+    public StandardRenderedTemplateOutputEntryValidator() {
+        super();
+    }
+
+    public boolean checkIsValueStillValid(
+            final String key, final RenderedTemplateOutput value, final long entryCreationTimestamp) {
+        return value.getTemplateResolution().getValidity().isCacheStillValid();
+    }
+
+}
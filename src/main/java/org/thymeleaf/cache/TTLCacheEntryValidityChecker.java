@@ -0,0 +1,79 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.cache;
+
+
+
+/**
+ * <p>
+ *   Implementation of {@link ICacheEntryValidityChecker} that considers cache entries valid
+ *   only during a fixed amount of time (TTL, time-to-live) since the moment they were added
+ *   to the cache.
+ * </p>
+ * <p>
+ *   Useful for caches whose values are not able to provide validity information by themselves,
+ *   like for example the rendered output stored at the <i>fragment output cache</i>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ * @param <K> The type of the cache map keys
+ * @param <V> The type of the cache map values
+ */
+public final class TTLCacheEntryValidityChecker<K,V> implements ICacheEntryValidityChecker<K,V> {
+
+    private static final long serialVersionUID = 4416236514227218371L;
+
+    private final long cacheTTLMs;
+
+
+    /**
+     * <p>
+     *   Creates a new instance of this validity checker.
+     * </p>
+     *
+     * @param cacheTTLMs the TTL (in milliseconds) to be applied to cache entries.
+     */
+    public TTLCacheEntryValidityChecker(final long cacheTTLMs) {
+        super();
+        this.cacheTTLMs = cacheTTLMs;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the TTL in milliseconds to be applied to cache entries.
+     * </p>
+     *
+     * @return the TTL in milliseconds
+     */
+    public long getCacheTTLMs() {
+        return this.cacheTTLMs;
+    }
+
+
+    public boolean checkIsValueStillValid(final K key, final V value, final long entryCreationTimestamp) {
+        final long currentTimeInMillis = System.currentTimeMillis();
+        return (currentTimeInMillis < entryCreationTimestamp + this.cacheTTLMs);
+    }
+
+}
@@ -49,6 +49,9 @@
     protected IElementProcessor[] associatedProcessors = null;
     protected int associatedProcessorsSize = 0;
     protected int associatedProcessorsAttributesVersion = Integer.MIN_VALUE; // This ensures a recompute will be performed immediately
+    // True if the associatedProcessors array is an immutable one, computed for a cached tag and shared with all of
+    // its clones. It will be replaced (never modified) if processors need to be recomputed.
+    private boolean associatedProcessorsShared = false;
 
 
 
@@ -139,6 +142,12 @@ void recomputeProcessors() {
 
         // Something has changed (usually the processors associated with the attributes) so we need to recompute
 
+        if (this.associatedProcessorsShared) {
+            // Not ours to modify
+            this.associatedProcessors = null;
+            this.associatedProcessorsShared = false;
+        }
+
         this.associatedProcessorsSize = 0;
 
         if (this.elementDefinition.hasAssociatedProcessors) {
@@ -230,14 +239,51 @@ protected void resetAsCloneOfProcessableElementTag(final AbstractProcessableElem
         } else {
             this.elementAttributes.resetAsCloneOf(original.elementAttributes); // not the same as cloning the ElementAttributes object, because we want
         }
-        this.associatedProcessorsSize = 0;
-        if (original.associatedProcessorsSize > 0) {
-            for (int i = 0; i < original.associatedProcessorsSize; i++) {
-                addAssociatedProcessor(original.associatedProcessors[i]);
+        if (original.associatedProcessorsShared) {
+            // The processors of cached tags are computed only once and then shared by all their clones, so that
+            // they don't need to be recomputed (nor copied) every time the tag is processed
+            this.associatedProcessors = original.associatedProcessors;
+            this.associatedProcessorsSize = original.associatedProcessorsSize;
+            this.associatedProcessorsShared = true;
+        } else {
+            if (this.associatedProcessorsShared) {
+                // Not ours to modify
+                this.associatedProcessors = null;
+                this.associatedProcessorsShared = false;
+            }
+            this.associatedProcessorsSize = 0;
+            if (original.associatedProcessorsSize > 0) {
+                for (int i = 0; i < original.associatedProcessorsSize; i++) {
+                    addAssociatedProcessor(original.associatedProcessors[i]);
+                }
             }
         }
         this.associatedProcessorsAttributesVersion = original.associatedProcessorsAttributesVersion;
     }
 
 
+    // Meant to be called only from within the engine, when compacting cached markup: computes the processors for
+    // the (never to be modified) attributes of this tag, and makes them shareable with all the clones of this tag
+    final void compactAssociatedProcessors() {
+
+        precomputeAssociatedProcessors();
+
+        if (this.associatedProcessorsShared) {
+            return;
+        }
+
+        if (this.associatedProcessors != null && this.associatedProcessors.length > this.associatedProcessorsSize) {
+            if (this.associatedProcessorsSize == 0) {
+                this.associatedProcessors = null;
+            } else {
+                final IElementProcessor[] newAssociatedProcessors = new IElementProcessor[this.associatedProcessorsSize];
+                System.arraycopy(this.associatedProcessors, 0, newAssociatedProcessors, 0, this.associatedProcessorsSize);
+                this.associatedProcessors = newAssociatedProcessors;
+            }
+        }
+        this.associatedProcessorsShared = true;
+
+    }
+
+
 }
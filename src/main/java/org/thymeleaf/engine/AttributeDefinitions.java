@@ -27,9 +27,6 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.attoparser.util.TextUtil;
 import org.thymeleaf.exceptions.ConfigurationException;
@@ -160,6 +157,7 @@ public AttributeDefinitions(final Map<TemplateMode, Set<IElementProcessor>> elem
         for (final AttributeDefinition attributeDefinition : standardHTMLAttributeDefinitions) {
             this.htmlAttributeRepository.storeStandardAttribute(attributeDefinition);
         }
+        this.htmlAttributeRepository.indexStandardAttributes();
 
     }
 
@@ -349,13 +347,11 @@ static final class AttributeDefinitionRepository {
 
         private final List<String> standardRepositoryNames; // read-only, no sync needed
         private final List<AttributeDefinition> standardRepository; // read-only, no sync needed
+        private StandardNameTable<AttributeDefinition> standardTable; // read-only once built, no sync needed
 
-        private final List<String> repositoryNames;  // read-write, sync will be needed
-        private final List<AttributeDefinition> repository;  // read-write, sync will be needed
-
-        private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
-        private final Lock readLock = this.lock.readLock();
-        private final Lock writeLock = this.lock.writeLock();
+        // Read-write, but published snapshots are never modified: lookups need no synchronization at all, and the
+        // (rare, once warmed up) additions are performed by publishing a new snapshot
+        private volatile RepositorySnapshot repository;
 
 
         AttributeDefinitionRepository(final boolean html, final Map<TemplateMode, Set<IElementProcessor>> elementProcessorsByTemplateMode) {
@@ -368,8 +364,8 @@ static final class AttributeDefinitionRepository {
             this.standardRepositoryNames = (html ? new ArrayList<String>(150) : null);
             this.standardRepository = (html ? new ArrayList<AttributeDefinition>(150) : null);
 
-            this.repositoryNames = new ArrayList<String>(500);
-            this.repository = new ArrayList<AttributeDefinition>(500);
+            this.repository =
+                    new RepositorySnapshot(new ArrayList<String>(0), new ArrayList<AttributeDefinition>(0));
 
         }
 
@@ -378,48 +374,34 @@ AttributeDefinition getAttribute(final char[] text, final int offset, final int
 
             int index;
 
-            if (this.standardRepository != null) {
+            if (this.standardTable != null) {
                 /*
-                 * We first try to find it in the repository containing the standard elements, which does not need
-                 * any synchronization.
+                 * We first try to find it in the (perfect hash) table containing the standard attributes, which does not
+                 * need any synchronization nor performs any allocation.
                  */
-                index = binarySearch(!this.html, this.standardRepositoryNames, text, offset, len);
-
-                if (index >= 0) {
-                    return this.standardRepository.get(index);
+                final AttributeDefinition standardDefinition = this.standardTable.get(text, offset, len);
+                if (standardDefinition != null) {
+                    return standardDefinition;
                 }
             }
 
             /*
              * We did not find it in the repository of standard elements, so let's try in the read+write one,
-             * which does require synchronization through a readwrite lock.
+             * which does not require any synchronization either, as we will be reading an immutable snapshot.
              */
+            final RepositorySnapshot repository = this.repository;
+            index = binarySearch(!this.html, repository.names, text, offset, len);
 
-            this.readLock.lock();
-            try {
-
-                /*
-                 * First look for the element in the namespaced repository
-                 */
-                index = binarySearch(!this.html, this.repositoryNames, text, offset, len);
-
-                if (index >= 0) {
-                    return this.repository.get(index);
-                }
-
-            } finally {
-                this.readLock.unlock();
+            if (index >= 0) {
+                return repository.definitions.get(index);
             }
 
 
             /*
-             * NOT FOUND. We need to obtain a write lock and store the text
+             * NOT FOUND. We need to obtain the lock for modifications and store the text
              */
-            this.writeLock.lock();
-            try {
+            synchronized (this) {
                 return storeAttribute(text, offset, len);
-            } finally {
-                this.writeLock.unlock();
             }
 
         }
@@ -429,48 +411,34 @@ AttributeDefinition getAttribute(final String completeAttributeName) {
 
             int index;
 
-            if (this.standardRepository != null) {
+            if (this.standardTable != null) {
                 /*
-                 * We first try to find it in the repository containing the standard elements, which does not need
-                 * any synchronization.
+                 * We first try to find it in the (perfect hash) table containing the standard attributes, which does not
+                 * need any synchronization nor performs any allocation.
                  */
-                index = binarySearch(!this.html, this.standardRepositoryNames, completeAttributeName);
-
-                if (index >= 0) {
-                    return this.standardRepository.get(index);
+                final AttributeDefinition standardDefinition = this.standardTable.get(completeAttributeName);
+                if (standardDefinition != null) {
+                    return standardDefinition;
                 }
             }
 
             /*
              * We did not find it in the repository of standard elements, so let's try in the read+write one,
-             * which does require synchronization through a readwrite lock.
+             * which does not require any synchronization either, as we will be reading an immutable snapshot.
              */
+            final RepositorySnapshot repository = this.repository;
+            index = binarySearch(!this.html, repository.names, completeAttributeName);
 
-            this.readLock.lock();
-            try {
-
-                /*
-                 * First look for the element in the namespaced repository
-                 */
-                index = binarySearch(!this.html, this.repositoryNames, completeAttributeName);
-
-                if (index >= 0) {
-                    return this.repository.get(index);
-                }
-
-            } finally {
-                this.readLock.unlock();
+            if (index >= 0) {
+                return repository.definitions.get(index);
             }
 
 
             /*
-             * NOT FOUND. We need to obtain a write lock and store the text
+             * NOT FOUND. We need to obtain the lock for modifications and store the text
              */
-            this.writeLock.lock();
-            try {
+            synchronized (this) {
                 return storeAttribute(completeAttributeName);
-            } finally {
-                this.writeLock.unlock();
             }
 
         }
@@ -494,34 +462,21 @@ AttributeDefinition getAttribute(final String prefix, final String attributeName
 
             /*
              * We did not find it in the repository of standard elements, so let's try in the read+write one,
-             * which does require synchronization through a readwrite lock.
+             * which does not require any synchronization either, as we will be reading an immutable snapshot.
              */
+            final RepositorySnapshot repository = this.repository;
+            index = binarySearch(!this.html, repository.names, prefix, attributeName);
 
-            this.readLock.lock();
-            try {
-
-                /*
-                 * First look for the element in the namespaced repository
-                 */
-                index = binarySearch(!this.html, this.repositoryNames, prefix, attributeName);
-
-                if (index >= 0) {
-                    return this.repository.get(index);
-                }
-
-            } finally {
-                this.readLock.unlock();
+            if (index >= 0) {
+                return repository.definitions.get(index);
             }
 
 
             /*
-             * NOT FOUND. We need to obtain a write lock and store the text
+             * NOT FOUND. We need to obtain the lock for modifications and store the text
              */
-            this.writeLock.lock();
-            try {
+            synchronized (this) {
                 return storeAttribute(prefix, attributeName);
-            } finally {
-                this.writeLock.unlock();
             }
 
         }
@@ -529,10 +484,10 @@ AttributeDefinition getAttribute(final String prefix, final String attributeName
 
         private AttributeDefinition storeAttribute(final char[] text, final int offset, final int len) {
 
-            int index = binarySearch(!this.html, this.repositoryNames, text, offset, len);
+            int index = binarySearch(!this.html, this.repository.names, text, offset, len);
             if (index >= 0) {
                 // It was already added while we were waiting for the lock!
-                return this.repository.get(index);
+                return this.repository.definitions.get(index);
             }
 
             final AttributeDefinition attributeDefinition =
@@ -540,17 +495,7 @@ private AttributeDefinition storeAttribute(final char[] text, final int offset,
                             buildHTMLAttributeDefinition(AttributeNames.forHTMLName(text, offset, len), this.elementProcessorsByTemplateMode.get(TemplateMode.HTML)) :
                             buildXMLAttributeDefinition(AttributeNames.forXMLName(text, offset, len), this.elementProcessorsByTemplateMode.get(TemplateMode.XML));
 
-            final String[] completeAttributeNames = attributeDefinition.attributeName.completeAttributeNames;
-
-            for (final String completeAttributeName : completeAttributeNames) {
-
-                index = binarySearch(!this.html, this.repositoryNames, completeAttributeName);
-
-                // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeAttributeName);
-                this.repository.add(((index + 1) * -1), attributeDefinition);
-
-            }
+            publishAttribute(attributeDefinition);
 
             return attributeDefinition;
 
@@ -559,10 +504,10 @@ private AttributeDefinition storeAttribute(final char[] text, final int offset,
 
         private AttributeDefinition storeAttribute(final String attributeName) {
 
-            int index = binarySearch(!this.html, this.repositoryNames, attributeName);
+            int index = binarySearch(!this.html, this.repository.names, attributeName);
             if (index >= 0) {
                 // It was already added while we were waiting for the lock!
-                return this.repository.get(index);
+                return this.repository.definitions.get(index);
             }
 
             final AttributeDefinition attributeDefinition =
@@ -570,17 +515,7 @@ private AttributeDefinition storeAttribute(final String attributeName) {
                             buildHTMLAttributeDefinition(AttributeNames.forHTMLName(attributeName), this.elementProcessorsByTemplateMode.get(TemplateMode.HTML)) :
                             buildXMLAttributeDefinition(AttributeNames.forXMLName(attributeName), this.elementProcessorsByTemplateMode.get(TemplateMode.XML));
 
-            final String[] completeAttributeNames = attributeDefinition.attributeName.completeAttributeNames;
-
-            for (final String completeAttributeName : completeAttributeNames) {
-
-                index = binarySearch(!this.html, this.repositoryNames, completeAttributeName);
-
-                // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeAttributeName);
-                this.repository.add(((index + 1) * -1), attributeDefinition);
-
-            }
+            publishAttribute(attributeDefinition);
 
             return attributeDefinition;
 
@@ -589,10 +524,10 @@ private AttributeDefinition storeAttribute(final String attributeName) {
 
         private AttributeDefinition storeAttribute(final String prefix, final String attributeName) {
 
-            int index = binarySearch(!this.html, this.repositoryNames, prefix, attributeName);
+            int index = binarySearch(!this.html, this.repository.names, prefix, attributeName);
             if (index >= 0) {
                 // It was already added while we were waiting for the lock!
-                return this.repository.get(index);
+                return this.repository.definitions.get(index);
             }
 
             final AttributeDefinition attributeDefinition =
@@ -600,17 +535,7 @@ private AttributeDefinition storeAttribute(final String prefix, final String att
                             buildHTMLAttributeDefinition(AttributeNames.forHTMLName(prefix, attributeName), this.elementProcessorsByTemplateMode.get(TemplateMode.HTML)) :
                             buildXMLAttributeDefinition(AttributeNames.forXMLName(prefix, attributeName), this.elementProcessorsByTemplateMode.get(TemplateMode.XML));
 
-            final String[] completeAttributeNames = attributeDefinition.attributeName.completeAttributeNames;
-
-            for (final String completeAttributeName : completeAttributeNames) {
-
-                index = binarySearch(!this.html, this.repositoryNames, completeAttributeName);
-
-                // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeAttributeName);
-                this.repository.add(((index + 1) * -1), attributeDefinition);
-
-            }
+            publishAttribute(attributeDefinition);
 
             return attributeDefinition;
 
@@ -633,15 +558,47 @@ private AttributeDefinition storeStandardAttribute(final AttributeDefinition att
                 this.standardRepositoryNames.add(((index + 1) * -1), completeAttributeName);
                 this.standardRepository.add(((index + 1) * -1), attributeDefinition);
 
-                index = binarySearch(!this.html, this.repositoryNames, completeAttributeName);
+            }
+
+            publishAttribute(attributeDefinition);
+
+            return attributeDefinition;
+
+        }
+
+
+        private void indexStandardAttributes() {
+
+            // This method will only be called from within the AttributeDefinitions class itself, once all standard
+            // attributes have been stored.
+
+            this.standardTable = new StandardNameTable<AttributeDefinition>(this.standardRepositoryNames, this.standardRepository);
+
+        }
+
+
+        private void publishAttribute(final AttributeDefinition attributeDefinition) {
+
+            // The current snapshot might be being read at this moment, so it is never modified. Instead, a new one
+            // is created including the new definition, and then published.
+
+            final List<String> names = new ArrayList<String>(this.repository.names);
+            final List<AttributeDefinition> definitions = new ArrayList<AttributeDefinition>(this.repository.definitions);
+
+            final String[] completeAttributeNames = attributeDefinition.attributeName.completeAttributeNames;
+
+            int index;
+            for (final String completeAttributeName : completeAttributeNames) {
+
+                index = binarySearch(!this.html, names, completeAttributeName);
 
                 // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeAttributeName);
-                this.repository.add(((index + 1) * -1), attributeDefinition);
+                names.add(((index + 1) * -1), completeAttributeName);
+                definitions.add(((index + 1) * -1), attributeDefinition);
 
             }
 
-            return attributeDefinition;
+            this.repository = new RepositorySnapshot(names, definitions);
 
         }
 
@@ -795,6 +752,22 @@ private static int binarySearch(final boolean caseSensitive,
         }
 
 
+
+
+        private static final class RepositorySnapshot {
+
+            final List<String> names;
+            final List<AttributeDefinition> definitions;
+
+            RepositorySnapshot(final List<String> names, final List<AttributeDefinition> definitions) {
+                super();
+                this.names = names;
+                this.definitions = definitions;
+            }
+
+        }
+
+
     }
 
 
@@ -43,6 +43,9 @@
 
     private char[] buffer;
     private int offset;
+    // True if the buffer is an immutable one, either owned by this event or shared among all the (cached) events
+    // of a template, and therefore can be safely referenced from clones
+    private boolean bufferShared = false;
 
     private String cdataSection;
     private String content;
@@ -176,6 +179,7 @@ void reset(final char[] buffer,
 
         this.buffer = buffer;
         this.offset = outerOffset;
+        this.bufferShared = false;
 
         this.cdataSectionLength = outerLen;
         this.contentLength = this.cdataSectionLength - CDATA_PREFIX.length() - CDATA_SUFFIX.length();
@@ -206,6 +210,7 @@ public void setContent(final String content) {
 
         this.buffer = null;
         this.offset = -1;
+        this.bufferShared = false;
 
         this.templateName = null;
         this.line = -1;
@@ -270,13 +275,53 @@ public CDATASection cloneNode() {
     }
 
 
+    // Meant to be called only from within the engine, when compacting cached markup: copies the contents of this
+    // event into the (immutable, shared) buffer at the specified offset, and makes this event a view on it
+    int compactInto(final char[] sharedBuffer, final int sharedOffset) {
+
+        if (this.buffer != null) {
+            System.arraycopy(this.buffer, this.offset, sharedBuffer, sharedOffset, this.cdataSectionLength);
+        } else {
+            getCDATASection().getChars(0, this.cdataSectionLength, sharedBuffer, sharedOffset);
+        }
+
+        this.buffer = sharedBuffer;
+        this.offset = sharedOffset;
+        this.bufferShared = true;
+        this.cdataSection = null;
+        this.content = null;
+
+        return sharedOffset + this.cdataSectionLength;
+
+    }
+
+
     // Meant to be called only from within the engine
     void resetAsCloneOf(final CDATASection original) {
 
-        this.buffer = null;
-        this.offset = -1;
-        this.cdataSection = original.getCDATASection(); // Need to call the method in order to force computing -- no buffer cloning!
-        this.content = original.getContent(); // Need to call the method in order to force computing -- no buffer cloning!
+        if (original.bufferShared) {
+            // Shared buffers are immutable, so they can be safely referenced (and no String needs to be created)
+            this.buffer = original.buffer;
+            this.offset = original.offset;
+            this.bufferShared = true;
+            this.cdataSection = original.cdataSection;
+            this.content = original.content;
+        } else if (original.buffer == null) {
+            this.buffer = null;
+            this.offset = -1;
+            this.bufferShared = false;
+            this.cdataSection = original.cdataSection;
+            this.content = original.content;
+        } else {
+            // The original buffer is not ours to keep (it will normally be a parser buffer), so we copy the
+            // contents into a buffer of our own instead of creating (and looking up) String objects
+            this.buffer = new char[original.cdataSectionLength];
+            System.arraycopy(original.buffer, original.offset, this.buffer, 0, original.cdataSectionLength);
+            this.offset = 0;
+            this.bufferShared = true;
+            this.cdataSection = null;
+            this.content = null;
+        }
         this.cdataSectionLength = original.cdataSectionLength;
         this.contentLength = original.contentLength;
         this.templateName = original.templateName;
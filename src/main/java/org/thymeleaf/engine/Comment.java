@@ -43,6 +43,9 @@
 
     private char[] buffer;
     private int offset;
+    // True if the buffer is an immutable one, either owned by this event or shared among all the (cached) events
+    // of a template, and therefore can be safely referenced from clones
+    private boolean bufferShared = false;
 
     private String comment;
     private String content;
@@ -178,6 +181,7 @@ void reset(final char[] buffer,
 
         this.buffer = buffer;
         this.offset = outerOffset;
+        this.bufferShared = false;
 
         this.commentLength = outerLen;
         this.contentLength = this.commentLength - COMMENT_PREFIX.length() - COMMENT_SUFFIX.length();
@@ -208,6 +212,7 @@ public void setContent(final String content) {
 
         this.buffer = null;
         this.offset = -1;
+        this.bufferShared = false;
 
         this.templateName = null;
         this.line = -1;
@@ -272,13 +277,53 @@ public Comment cloneNode() {
     }
 
 
+    // Meant to be called only from within the engine, when compacting cached markup: copies the contents of this
+    // event into the (immutable, shared) buffer at the specified offset, and makes this event a view on it
+    int compactInto(final char[] sharedBuffer, final int sharedOffset) {
+
+        if (this.buffer != null) {
+            System.arraycopy(this.buffer, this.offset, sharedBuffer, sharedOffset, this.commentLength);
+        } else {
+            getComment().getChars(0, this.commentLength, sharedBuffer, sharedOffset);
+        }
+
+        this.buffer = sharedBuffer;
+        this.offset = sharedOffset;
+        this.bufferShared = true;
+        this.comment = null;
+        this.content = null;
+
+        return sharedOffset + this.commentLength;
+
+    }
+
+
     // Meant to be called only from within the engine
     void resetAsCloneOf(final Comment original) {
 
-        this.buffer = null;
-        this.offset = -1;
-        this.comment = original.getComment(); // Need to call the method in order to force computing -- no buffer cloning!
-        this.content = original.getContent(); // Need to call the method in order to force computing -- no buffer cloning!
+        if (original.bufferShared) {
+            // Shared buffers are immutable, so they can be safely referenced (and no String needs to be created)
+            this.buffer = original.buffer;
+            this.offset = original.offset;
+            this.bufferShared = true;
+            this.comment = original.comment;
+            this.content = original.content;
+        } else if (original.buffer == null) {
+            this.buffer = null;
+            this.offset = -1;
+            this.bufferShared = false;
+            this.comment = original.comment;
+            this.content = original.content;
+        } else {
+            // The original buffer is not ours to keep (it will normally be a parser buffer), so we copy the
+            // contents into a buffer of our own instead of creating (and looking up) String objects
+            this.buffer = new char[original.commentLength];
+            System.arraycopy(original.buffer, original.offset, this.buffer, 0, original.commentLength);
+            this.offset = 0;
+            this.bufferShared = true;
+            this.comment = null;
+            this.content = null;
+        }
         this.commentLength = original.commentLength;
         this.contentLength = original.contentLength;
         this.templateName = original.templateName;
@@ -0,0 +1,72 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import org.thymeleaf.model.IComment;
+
+/**
+ * <p>
+ *   Template handler meant to be placed in front of a {@link MarkupBuilderTemplateHandler} when parsing
+ *   HTML templates, removing all comments that cannot be conditional comments
+ *   (<tt>&lt;!--[if ...]&gt;...&lt;![endif]--&gt;</tt>) so that they are neither cached nor output at
+ *   every execution.
+ * </p>
+ * <p>
+ *   Comments are kept if their content starts with <tt>[</tt> (after any whitespace). This is the same
+ *   criterion used for failing fast when processing conditional comments, so all comments that could be
+ *   processed as conditional comments are kept.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+final class CommentStrippingTemplateHandler extends AbstractTemplateHandler {
+
+    private static final int COMMENT_PREFIX_LEN = "<!--".length();
+
+
+
+    CommentStrippingTemplateHandler(final ITemplateHandler next) {
+        super(next);
+    }
+
+
+
+
+    @Override
+    public void handleComment(final IComment comment) {
+        if (isConditionalCommentCandidate(comment)) {
+            super.handleComment(comment);
+        }
+    }
+
+
+
+
+    static boolean isConditionalCommentCandidate(final IComment comment) {
+        final int len = comment.length();
+        int i = COMMENT_PREFIX_LEN;
+        while (i < len && Character.isWhitespace(comment.charAt(i))) { i++; }
+        return (i < len && comment.charAt(i) == '[');
+    }
+
+
+}
@@ -42,6 +42,9 @@ public final class ElementAttributes implements IElementAttributes {
 
     private static final int DEFAULT_ATTRIBUTES_SIZE = 4;
 
+    // Elements with at least this amount of attributes will be searched by means of a hashed index
+    private static final int ATTRIBUTE_INDEX_THRESHOLD = 8;
+
     private final TemplateMode templateMode;
     private final AttributeDefinitions attributeDefinitions;
 
@@ -51,8 +54,18 @@ public final class ElementAttributes implements IElementAttributes {
     AttributeName[] attributeNames = null;
     int attributesSize = 0;
 
-    private InnerWhiteSpace[] innerWhiteSpaces = null;
-    private int innerWhiteSpacesSize = 0;
+    InnerWhiteSpace[] innerWhiteSpaces = null;
+    int innerWhiteSpacesSize = 0;
+
+    // Open-addressing hash index of attribute positions (+1, so that 0 means empty) by attribute name, only valid
+    // when its version matches the attributes version. Built lazily, and only for elements with many attributes.
+    // Volatile because cached (never modified) instances can be searched (and their index built) from several
+    // threads at the same time, so a new index must only be visible once it is complete.
+    private volatile int[] attributeIndex = null;
+    private int attributeIndexVersion = 0;
+    // Whether the index is shared with the instance this one was cloned from (or with other clones of it), in which
+    // case it must never be modified in place
+    private boolean attributeIndexShared = false;
 
     // Meant to cache the list of attribute names
     private List<String> allCompleteNames = null;
@@ -104,6 +117,10 @@ public List<AttributeName> getAllAttributeNames() {
 
 
     private int searchAttribute(final String completeName) {
+        if (this.attributesSize >= ATTRIBUTE_INDEX_THRESHOLD) {
+            // Too many attributes for a linear scan of names to be worth it
+            return searchIndexedAttribute(computeAttributeDefinition(completeName).attributeName);
+        }
         // We will first try exact match on the names with which the attributes appear on markup, as an optimization
         // on the base case (use the AttributeDefinition).
         int n = this.attributesSize;
@@ -127,6 +144,9 @@ private int searchAttribute(final String prefix, final String name) {
 
 
     private int searchAttribute(final AttributeName attributeName) {
+        if (this.attributesSize >= ATTRIBUTE_INDEX_THRESHOLD) {
+            return searchIndexedAttribute(attributeName);
+        }
         int n = this.attributesSize;
         while (n-- != 0) {
             if (this.attributeNames[n].equals(attributeName)) {
@@ -137,6 +157,67 @@ private int searchAttribute(final AttributeName attributeName) {
     }
 
 
+    private int searchIndexedAttribute(final AttributeName attributeName) {
+
+        if (this.attributeIndex == null || this.attributeIndexVersion != this.version) {
+            // Any number of modifications since the last search will only make us rebuild the index once
+            buildAttributeIndex();
+        }
+
+        final int[] index = this.attributeIndex;
+        final int mask = index.length - 1;
+        int slot = spreadHash(attributeName.hashCode()) & mask;
+        int pos;
+        while ((pos = index[slot]) != 0) {
+            if (this.attributeNames[pos - 1].equals(attributeName)) {
+                return pos - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+
+    }
+
+
+    private void buildAttributeIndex() {
+
+        // Load factor will be kept at 0.5 at most (including room for some additions before needing to rebuild)
+        int indexSize = 16;
+        while (indexSize < (this.attributesSize + DEFAULT_ATTRIBUTES_SIZE) * 2) {
+            indexSize <<= 1;
+        }
+
+        final int[] index = new int[indexSize];
+        final int mask = indexSize - 1;
+        for (int i = 0; i < this.attributesSize; i++) {
+            indexAttribute(index, mask, i);
+        }
+
+        this.attributeIndexVersion = this.version;
+        this.attributeIndexShared = false;
+        this.attributeIndex = index;
+
+    }
+
+
+    private void indexAttribute(final int[] index, final int mask, final int pos) {
+
+        final AttributeName attributeName = this.attributeNames[pos];
+        int slot = spreadHash(attributeName.hashCode()) & mask;
+        while (index[slot] != 0 && !this.attributeNames[index[slot] - 1].equals(attributeName)) {
+            slot = (slot + 1) & mask;
+        }
+        // If the name was already there, the last position wins (as it would when searching linearly from the end)
+        index[slot] = pos + 1;
+
+    }
+
+
+    private static int spreadHash(final int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+
 
 
     public final boolean hasAttribute(final String completeName) {
@@ -394,7 +475,12 @@ final void setAttribute(
             final ElementAttribute existingAttribute = this.attributes[existingIdx];
             existingAttribute.reset(name, operator, value, valueQuotes, line, col);
 
+            // The name of the attribute does not change, so the attribute index (if any) will still be valid
+            final boolean indexValid = (this.attributeIndex != null && this.attributeIndexVersion == this.version);
             this.version++;
+            if (indexValid) {
+                this.attributeIndexVersion = this.version;
+            }
 
             return;
 
@@ -442,10 +528,22 @@ final void setAttribute(
             insertInnerWhiteSpace(this.attributesSize, "");
         }
 
+        // If we have a valid (and not shared) attribute index with enough room, add the new attribute to it instead of
+        // invalidating it
+        final boolean indexValid =
+                (this.attributeIndex != null && this.attributeIndexVersion == this.version && !this.attributeIndexShared &&
+                 (this.attributesSize + 1) * 2 <= this.attributeIndex.length);
+
         this.attributesSize++;
 
         this.version++;
 
+        if (indexValid) {
+            final int[] index = this.attributeIndex;
+            indexAttribute(index, index.length - 1, this.attributesSize - 1);
+            this.attributeIndexVersion = this.version;
+        }
+
     }
 
 
@@ -656,6 +754,39 @@ public final void write(final Writer writer) throws IOException {
 
 
 
+    // Meant to be called only from within the engine, when compacting cached markup: trims the internal arrays,
+    // which will never grow again as cached events are never modified (only copied)
+    final void compact() {
+
+        if (this.attributes != null && this.attributes.length > this.attributesSize) {
+            if (this.attributesSize == 0) {
+                this.attributes = null;
+                this.attributeNames = null;
+            } else {
+                final ElementAttribute[] newAttributes = new ElementAttribute[this.attributesSize];
+                System.arraycopy(this.attributes, 0, newAttributes, 0, this.attributesSize);
+                this.attributes = newAttributes;
+                final AttributeName[] newAttributeNames = new AttributeName[this.attributesSize];
+                System.arraycopy(this.attributeNames, 0, newAttributeNames, 0, this.attributesSize);
+                this.attributeNames = newAttributeNames;
+            }
+        }
+
+        if (this.innerWhiteSpaces != null && this.innerWhiteSpaces.length > this.innerWhiteSpacesSize) {
+            if (this.innerWhiteSpacesSize == 0) {
+                this.innerWhiteSpaces = null;
+            } else {
+                final InnerWhiteSpace[] newInnerWhiteSpaces = new InnerWhiteSpace[this.innerWhiteSpacesSize];
+                System.arraycopy(this.innerWhiteSpaces, 0, newInnerWhiteSpaces, 0, this.innerWhiteSpacesSize);
+                this.innerWhiteSpaces = newInnerWhiteSpaces;
+            }
+        }
+
+    }
+
+
+
+
     static final class InnerWhiteSpace {
 
         String whiteSpace;
@@ -775,6 +906,19 @@ void resetAsCloneOf(final ElementAttributes from) {
         this.version = from.version;
         this.computedNamesVersion = from.computedNamesVersion;
 
+        // If the index of the original is valid, it is shared instead of being rebuilt for every clone. This is safe
+        // because indexes are only modified in place by the instance that built them, and never once shared.
+        final int[] fromAttributeIndex = from.attributeIndex;
+        if (fromAttributeIndex != null && from.attributeIndexVersion == from.version) {
+            this.attributeIndexVersion = from.version;
+            this.attributeIndexShared = true;
+            from.attributeIndexShared = true;
+            this.attributeIndex = fromAttributeIndex;
+        } else {
+            // Our attribute index (if any) does not correspond to the new attributes, whatever the version says
+            this.attributeIndex = null;
+        }
+
     }
 
 
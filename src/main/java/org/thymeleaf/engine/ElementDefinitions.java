@@ -25,9 +25,6 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.attoparser.util.TextUtil;
 import org.thymeleaf.exceptions.ConfigurationException;
@@ -258,6 +255,7 @@ public ElementDefinitions(final Map<TemplateMode, Set<IElementProcessor>> elemen
         for (final HTMLElementDefinition elementDefinition : standardHTMLElementDefinitions) {
             this.htmlElementRepository.storeStandardElement(elementDefinition);
         }
+        this.htmlElementRepository.indexStandardElements();
 
     }
 
@@ -441,13 +439,11 @@ static final class ElementDefinitionRepository {
 
         private final List<String> standardRepositoryNames; // read-only, no sync needed
         private final List<ElementDefinition> standardRepository; // read-only, no sync needed
+        private StandardNameTable<ElementDefinition> standardTable; // read-only once built, no sync needed
 
-        private final List<String> repositoryNames;  // read-write, sync will be needed
-        private final List<ElementDefinition> repository;  // read-write, sync will be needed
-
-        private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
-        private final Lock readLock = this.lock.readLock();
-        private final Lock writeLock = this.lock.writeLock();
+        // Read-write, but published snapshots are never modified: lookups need no synchronization at all, and the
+        // (rare, once warmed up) additions are performed by publishing a new snapshot
+        private volatile RepositorySnapshot repository;
 
 
         ElementDefinitionRepository(final boolean html, final Map<TemplateMode, Set<IElementProcessor>> elementProcessorsByTemplateMode) {
@@ -460,8 +456,8 @@ static final class ElementDefinitionRepository {
             this.standardRepositoryNames = (html ? new ArrayList<String>(150) : null);
             this.standardRepository = (html ? new ArrayList<ElementDefinition>(150) : null);
 
-            this.repositoryNames = new ArrayList<String>(150);
-            this.repository = new ArrayList<ElementDefinition>(150);
+            this.repository =
+                    new RepositorySnapshot(new ArrayList<String>(0), new ArrayList<ElementDefinition>(0));
 
         }
 
@@ -470,49 +466,34 @@ ElementDefinition getElement(final char[] text, final int offset, final int len)
 
             int index;
 
-            if (this.standardRepository != null) {
+            if (this.standardTable != null) {
                 /*
-                 * We first try to find it in the repositories containing the standard elements, which does not need
-                 * any synchronization.
+                 * We first try to find it in the (perfect hash) table containing the standard elements, which does not
+                 * need any synchronization nor performs any allocation.
                  */
-                index = binarySearch(!this.html, this.standardRepositoryNames, text, offset, len);
-
-                if (index >= 0) {
-                    return this.standardRepository.get(index);
+                final ElementDefinition standardDefinition = this.standardTable.get(text, offset, len);
+                if (standardDefinition != null) {
+                    return standardDefinition;
                 }
-
             }
 
             /*
              * We did not find it in the repository of standard elements, so let's try in the read+write one,
-             * which does require synchronization through a readwrite lock.
+             * which does not require any synchronization either, as we will be reading an immutable snapshot.
              */
+            final RepositorySnapshot repository = this.repository;
+            index = binarySearch(!this.html, repository.names, text, offset, len);
 
-            this.readLock.lock();
-            try {
-
-                /*
-                 * First look for the element in the namespaced repository
-                 */
-                index = binarySearch(!this.html, this.repositoryNames, text, offset, len);
-
-                if (index >= 0) {
-                    return this.repository.get(index);
-                }
-
-            } finally {
-                this.readLock.unlock();
+            if (index >= 0) {
+                return repository.definitions.get(index);
             }
 
 
             /*
-             * NOT FOUND. We need to obtain a write lock and store the text
+             * NOT FOUND. We need to obtain the lock for modifications and store the text
              */
-            this.writeLock.lock();
-            try {
+            synchronized (this) {
                 return storeElement(text, offset, len);
-            } finally {
-                this.writeLock.unlock();
             }
 
         }
@@ -522,48 +503,34 @@ ElementDefinition getElement(final String completeElementName) {
 
             int index;
 
-            if (this.standardRepository != null) {
+            if (this.standardTable != null) {
                 /*
-                 * We first try to find it in the repository containing the standard elements, which does not need
-                 * any synchronization.
+                 * We first try to find it in the (perfect hash) table containing the standard elements, which does not
+                 * need any synchronization nor performs any allocation.
                  */
-                index = binarySearch(!this.html, this.standardRepositoryNames, completeElementName);
-
-                if (index >= 0) {
-                    return this.standardRepository.get(index);
+                final ElementDefinition standardDefinition = this.standardTable.get(completeElementName);
+                if (standardDefinition != null) {
+                    return standardDefinition;
                 }
             }
 
             /*
              * We did not find it in the repository of standard elements, so let's try in the read+write one,
-             * which does require synchronization through a readwrite lock.
+             * which does not require any synchronization either, as we will be reading an immutable snapshot.
              */
+            final RepositorySnapshot repository = this.repository;
+            index = binarySearch(!this.html, repository.names, completeElementName);
 
-            this.readLock.lock();
-            try {
-
-                /*
-                 * First look for the element in the namespaced repository
-                 */
-                index = binarySearch(!this.html, this.repositoryNames, completeElementName);
-
-                if (index >= 0) {
-                    return this.repository.get(index);
-                }
-
-            } finally {
-                this.readLock.unlock();
+            if (index >= 0) {
+                return repository.definitions.get(index);
             }
 
 
             /*
-             * NOT FOUND. We need to obtain a write lock and store the text
+             * NOT FOUND. We need to obtain the lock for modifications and store the text
              */
-            this.writeLock.lock();
-            try {
+            synchronized (this) {
                 return storeElement(completeElementName);
-            } finally {
-                this.writeLock.unlock();
             }
 
         }
@@ -587,34 +554,21 @@ ElementDefinition getElement(final String prefix, final String elementName) {
 
             /*
              * We did not find it in the repository of standard elements, so let's try in the read+write one,
-             * which does require synchronization through a readwrite lock.
+             * which does not require any synchronization either, as we will be reading an immutable snapshot.
              */
+            final RepositorySnapshot repository = this.repository;
+            index = binarySearch(!this.html, repository.names, prefix, elementName);
 
-            this.readLock.lock();
-            try {
-
-                /*
-                 * First look for the element in the namespaced repository
-                 */
-                index = binarySearch(!this.html, this.repositoryNames, prefix, elementName);
-
-                if (index >= 0) {
-                    return this.repository.get(index);
-                }
-
-            } finally {
-                this.readLock.unlock();
+            if (index >= 0) {
+                return repository.definitions.get(index);
             }
 
 
             /*
-             * NOT FOUND. We need to obtain a write lock and store the text
+             * NOT FOUND. We need to obtain the lock for modifications and store the text
              */
-            this.writeLock.lock();
-            try {
+            synchronized (this) {
                 return storeElement(prefix, elementName);
-            } finally {
-                this.writeLock.unlock();
             }
 
         }
@@ -622,10 +576,10 @@ ElementDefinition getElement(final String prefix, final String elementName) {
 
         private ElementDefinition storeElement(final char[] text, final int offset, final int len) {
 
-            int index = binarySearch(!this.html, this.repositoryNames, text, offset, len);
+            int index = binarySearch(!this.html, this.repository.names, text, offset, len);
             if (index >= 0) {
                 // It was already added while we were waiting for the lock!
-                return this.repository.get(index);
+                return this.repository.definitions.get(index);
             }
 
             final ElementDefinition elementDefinition =
@@ -633,17 +587,7 @@ private ElementDefinition storeElement(final char[] text, final int offset, fina
                             buildHTMLElementDefinition(ElementNames.forHTMLName(text, offset, len), HTMLElementType.NORMAL, this.elementProcessorsByTemplateMode.get(TemplateMode.HTML)) :
                             buildXMLElementDefinition(ElementNames.forXMLName(text, offset, len), this.elementProcessorsByTemplateMode.get(TemplateMode.XML));
 
-            final String[] completeElementNames = elementDefinition.elementName.completeElementNames;
-
-            for (final String completeElementName : completeElementNames) {
-
-                index = binarySearch(!this.html, this.repositoryNames, completeElementName);
-
-                // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeElementName);
-                this.repository.add(((index + 1) * -1), elementDefinition);
-
-            }
+            publishElement(elementDefinition);
 
             return elementDefinition;
 
@@ -652,10 +596,10 @@ private ElementDefinition storeElement(final char[] text, final int offset, fina
 
         private ElementDefinition storeElement(final String text) {
 
-            int index = binarySearch(!this.html, this.repositoryNames, text);
+            int index = binarySearch(!this.html, this.repository.names, text);
             if (index >= 0) {
                 // It was already added while we were waiting for the lock!
-                return this.repository.get(index);
+                return this.repository.definitions.get(index);
             }
 
             final ElementDefinition elementDefinition =
@@ -663,17 +607,7 @@ private ElementDefinition storeElement(final String text) {
                             buildHTMLElementDefinition(ElementNames.forHTMLName(text), HTMLElementType.NORMAL, this.elementProcessorsByTemplateMode.get(TemplateMode.HTML)) :
                             buildXMLElementDefinition(ElementNames.forXMLName(text), this.elementProcessorsByTemplateMode.get(TemplateMode.XML));
 
-            final String[] completeElementNames = elementDefinition.elementName.completeElementNames;
-
-            for (final String completeElementName : completeElementNames) {
-
-                index = binarySearch(!this.html, this.repositoryNames, completeElementName);
-
-                // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeElementName);
-                this.repository.add(((index + 1) * -1), elementDefinition);
-
-            }
+            publishElement(elementDefinition);
 
             return elementDefinition;
 
@@ -682,10 +616,10 @@ private ElementDefinition storeElement(final String text) {
 
         private ElementDefinition storeElement(final String prefix, final String elementName) {
 
-            int index = binarySearch(!this.html, this.repositoryNames, prefix, elementName);
+            int index = binarySearch(!this.html, this.repository.names, prefix, elementName);
             if (index >= 0) {
                 // It was already added while we were waiting for the lock!
-                return this.repository.get(index);
+                return this.repository.definitions.get(index);
             }
 
             final ElementDefinition elementDefinition =
@@ -693,17 +627,7 @@ private ElementDefinition storeElement(final String prefix, final String element
                             buildHTMLElementDefinition(ElementNames.forHTMLName(prefix, elementName), HTMLElementType.NORMAL, this.elementProcessorsByTemplateMode.get(TemplateMode.HTML)) :
                             buildXMLElementDefinition(ElementNames.forXMLName(prefix, elementName), this.elementProcessorsByTemplateMode.get(TemplateMode.XML));
 
-            final String[] completeElementNames = elementDefinition.elementName.completeElementNames;
-
-            for (final String completeElementName : completeElementNames) {
-
-                index = binarySearch(!this.html, this.repositoryNames, completeElementName);
-
-                // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeElementName);
-                this.repository.add(((index + 1) * -1), elementDefinition);
-
-            }
+            publishElement(elementDefinition);
 
             return elementDefinition;
 
@@ -726,15 +650,47 @@ private ElementDefinition storeStandardElement(final ElementDefinition elementDe
                 this.standardRepositoryNames.add(((index + 1) * -1), completeElementName);
                 this.standardRepository.add(((index + 1) * -1), elementDefinition);
 
-                index = binarySearch(!this.html, this.repositoryNames, completeElementName);
+            }
+
+            publishElement(elementDefinition);
+
+            return elementDefinition;
+
+        }
+
+
+        private void indexStandardElements() {
+
+            // This method will only be called from within the ElementDefinitions class itself, once all standard
+            // elements have been stored.
+
+            this.standardTable = new StandardNameTable<ElementDefinition>(this.standardRepositoryNames, this.standardRepository);
+
+        }
+
+
+        private void publishElement(final ElementDefinition elementDefinition) {
+
+            // The current snapshot might be being read at this moment, so it is never modified. Instead, a new one
+            // is created including the new definition, and then published.
+
+            final List<String> names = new ArrayList<String>(this.repository.names);
+            final List<ElementDefinition> definitions = new ArrayList<ElementDefinition>(this.repository.definitions);
+
+            final String[] completeElementNames = elementDefinition.elementName.completeElementNames;
+
+            int index;
+            for (final String completeElementName : completeElementNames) {
+
+                index = binarySearch(!this.html, names, completeElementName);
 
                 // binary Search returned (-(insertion point) - 1)
-                this.repositoryNames.add(((index + 1) * -1), completeElementName);
-                this.repository.add(((index + 1) * -1), elementDefinition);
+                names.add(((index + 1) * -1), completeElementName);
+                definitions.add(((index + 1) * -1), elementDefinition);
 
             }
 
-            return elementDefinition;
+            this.repository = new RepositorySnapshot(names, definitions);
 
         }
 
@@ -888,6 +844,22 @@ private static int binarySearch(final boolean caseSensitive,
         }
 
 
+
+
+        private static final class RepositorySnapshot {
+
+            final List<String> names;
+            final List<ElementDefinition> definitions;
+
+            RepositorySnapshot(final List<String> names, final List<ElementDefinition> definitions) {
+                super();
+                this.names = names;
+                this.definitions = definitions;
+            }
+
+        }
+
+
     }
 
 
@@ -85,6 +85,9 @@ final class ElementStructureHandler implements IElementStructureHandler {
     String iterStatusVariableName;
     Object iteratedObject;
 
+    boolean cacheElementOutput;
+    String cacheElementOutputKey;
+
 
 
 
@@ -218,6 +221,14 @@ public void iterateElement(final String iterVariableName, final String iterStatu
     }
 
 
+    public void cacheElementOutput(final String cacheKey) {
+        Validate.notEmpty(cacheKey, "Cache key cannot be null or empty");
+        resetAllButLocalVariables();
+        this.cacheElementOutput = true;
+        this.cacheElementOutputKey = cacheKey;
+    }
+
+
 
 
     public void reset() {
@@ -282,6 +293,9 @@ private void resetAllButLocalVariables() {
         this.iterStatusVariableName = null;
         this.iteratedObject = null;
 
+        this.cacheElementOutput = false;
+        this.cacheElementOutputKey = null;
+
     }
 
 
@@ -67,6 +67,12 @@ final class EngineEventQueue {
     private AutoCloseElementTag autoCloseElementTagBuffer = null;
     private UnmatchedCloseElementTag unmatchedCloseElementTagBuffer = null;
 
+    // These keep track of the event currently being processed (in its original, queued form) and the buffer object
+    // it has been copied into for being sent to the handler. This allows queued (and therefore immutable) events to
+    // be re-queued elsewhere without the need to clone them again (e.g. when gathering nested iterations).
+    private IEngineTemplateHandlerEvent processedEvent = null;
+    private Object processedEventBuffer = null;
+
 
 
     EngineEventQueue(final IEngineConfiguration configuration, final TemplateMode templateMode) {
@@ -225,6 +231,54 @@ void remove(final int pos) {
 
 
 
+    /*
+     * Reduces the memory footprint of the queued events before they are cached: trims all internal arrays, and makes
+     * all Text events views on a single char[] shared by the whole queue (instead of each one having its own String).
+     * Queued events are only copied into buffers (never modified) when processed, so this does not affect processing.
+     */
+    void compact() {
+
+        if (this.queue.length > this.queueSize) {
+            final IEngineTemplateHandlerEvent[] newQueue = new IEngineTemplateHandlerEvent[this.queueSize];
+            System.arraycopy(this.queue, 0, newQueue, 0, this.queueSize);
+            this.queue = newQueue;
+        }
+
+        int textLen = 0;
+        for (int i = 0; i < this.queueSize; i++) {
+            final IEngineTemplateHandlerEvent event = this.queue[i];
+            if (event instanceof Text) {
+                textLen += ((Text) event).length();
+            } else if (event instanceof Comment) {
+                textLen += ((Comment) event).length();
+            } else if (event instanceof CDATASection) {
+                textLen += ((CDATASection) event).length();
+            } else if (event instanceof AbstractProcessableElementTag) {
+                ((ElementAttributes) ((AbstractProcessableElementTag) event).getAttributes()).compact();
+                ((AbstractProcessableElementTag) event).compactAssociatedProcessors();
+            }
+        }
+
+        if (textLen > 0) {
+            final char[] sharedTextBuffer = new char[textLen];
+            int offset = 0;
+            for (int i = 0; i < this.queueSize; i++) {
+                final IEngineTemplateHandlerEvent event = this.queue[i];
+                if (event instanceof Text) {
+                    offset = ((Text) event).compactInto(sharedTextBuffer, offset);
+                } else if (event instanceof Comment) {
+                    offset = ((Comment) event).compactInto(sharedTextBuffer, offset);
+                } else if (event instanceof CDATASection) {
+                    offset = ((CDATASection) event).compactInto(sharedTextBuffer, offset);
+                }
+            }
+        }
+
+    }
+
+
+
+
     void process(final ITemplateHandler handler, final boolean reset) {
 
         if (handler == null || this.queueSize == 0) {
@@ -238,35 +292,64 @@ void process(final ITemplateHandler handler, final boolean reset) {
         while (n-- != 0) {
 
             event = this.queue[i++];
+            this.processedEvent = event;
 
             if (event instanceof Text) {
-                handler.handleText(bufferize((Text) event));
+                final Text buffer = bufferize((Text) event);
+                this.processedEventBuffer = buffer;
+                handler.handleText(buffer);
             } else if (event instanceof OpenElementTag) {
-                handler.handleOpenElement(bufferize((OpenElementTag) event));
+                final OpenElementTag buffer = bufferize((OpenElementTag) event);
+                this.processedEventBuffer = buffer;
+                handler.handleOpenElement(buffer);
             } else if (event instanceof CloseElementTag) {
-                handler.handleCloseElement(bufferize((CloseElementTag) event));
+                final CloseElementTag buffer = bufferize((CloseElementTag) event);
+                this.processedEventBuffer = buffer;
+                handler.handleCloseElement(buffer);
             } else if (event instanceof StandaloneElementTag) {
-                handler.handleStandaloneElement(bufferize((StandaloneElementTag) event));
+                final StandaloneElementTag buffer = bufferize((StandaloneElementTag) event);
+                this.processedEventBuffer = buffer;
+                handler.handleStandaloneElement(buffer);
             } else if (event instanceof AutoOpenElementTag) {
-                handler.handleAutoOpenElement(bufferize((AutoOpenElementTag) event));
+                final AutoOpenElementTag buffer = bufferize((AutoOpenElementTag) event);
+                this.processedEventBuffer = buffer;
+                handler.handleAutoOpenElement(buffer);
             } else if (event instanceof AutoCloseElementTag) {
-                handler.handleAutoCloseElement(bufferize((AutoCloseElementTag) event));
+                final AutoCloseElementTag buffer = bufferize((AutoCloseElementTag) event);
+                this.processedEventBuffer = buffer;
+                handler.handleAutoCloseElement(buffer);
             } else if (event instanceof UnmatchedCloseElementTag) {
-                handler.handleUnmatchedCloseElement(bufferize((UnmatchedCloseElementTag) event));
+                final UnmatchedCloseElementTag buffer = bufferize((UnmatchedCloseElementTag) event);
+                this.processedEventBuffer = buffer;
+                handler.handleUnmatchedCloseElement(buffer);
             } else if (event instanceof DocType) {
-                handler.handleDocType(bufferize((DocType) event));
+                final DocType buffer = bufferize((DocType) event);
+                this.processedEventBuffer = buffer;
+                handler.handleDocType(buffer);
             } else if (event instanceof Comment) {
-                handler.handleComment(bufferize((Comment) event));
+                final Comment buffer = bufferize((Comment) event);
+                this.processedEventBuffer = buffer;
+                handler.handleComment(buffer);
             } else if (event instanceof CDATASection) {
-                handler.handleCDATASection(bufferize((CDATASection) event));
+                final CDATASection buffer = bufferize((CDATASection) event);
+                this.processedEventBuffer = buffer;
+                handler.handleCDATASection(buffer);
             } else if (event instanceof XMLDeclaration) {
-                handler.handleXMLDeclaration(bufferize((XMLDeclaration) event));
+                final XMLDeclaration buffer = bufferize((XMLDeclaration) event);
+                this.processedEventBuffer = buffer;
+                handler.handleXMLDeclaration(buffer);
             } else if (event instanceof ProcessingInstruction) {
-                handler.handleProcessingInstruction(bufferize((ProcessingInstruction) event));
+                final ProcessingInstruction buffer = bufferize((ProcessingInstruction) event);
+                this.processedEventBuffer = buffer;
+                handler.handleProcessingInstruction(buffer);
             } else if (event instanceof DocumentStart) {
-                handler.handleDocumentStart(bufferize((DocumentStart) event));
+                final DocumentStart buffer = bufferize((DocumentStart) event);
+                this.processedEventBuffer = buffer;
+                handler.handleDocumentStart(buffer);
             } else if (event instanceof DocumentEnd) {
-                handler.handleDocumentEnd(bufferize((DocumentEnd) event));
+                final DocumentEnd buffer = bufferize((DocumentEnd) event);
+                this.processedEventBuffer = buffer;
+                handler.handleDocumentEnd(buffer);
             } else {
                 throw new TemplateProcessingException(
                         "Cannot handle in queue event of type: " + event.getClass().getName());
@@ -274,6 +357,9 @@ void process(final ITemplateHandler handler, final boolean reset) {
 
         }
 
+        this.processedEvent = null;
+        this.processedEventBuffer = null;
+
         if (reset) {
             Arrays.fill(this.queue, null);
             this.queueSize = 0;
@@ -283,6 +369,21 @@ void process(final ITemplateHandler handler, final boolean reset) {
 
 
 
+    /*
+     * If the specified event is the buffer this queue is currently using for sending one of its queued events to a
+     * handler, return the original, queued event. Queued events are never modified during processing (it is the
+     * buffers that are sent to the handlers), so the returned event can be safely added to a different queue without
+     * cloning it, as long as the buffer has not been modified by any processors yet.
+     */
+    IEngineTemplateHandlerEvent getProcessedEventForBuffer(final Object buffer) {
+        if (buffer == null || buffer != this.processedEventBuffer) {
+            return null;
+        }
+        return this.processedEvent;
+    }
+
+
+
     Text bufferize(final Text event) {
         if (this.textBuffer == null) {
             this.textBuffer = new Text(this.configuration.getTextRepository());
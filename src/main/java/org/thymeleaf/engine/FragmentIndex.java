@@ -0,0 +1,276 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.thymeleaf.templatemode.TemplateMode;
+
+/**
+ * <p>
+ *   Index of the fragments contained in a parsed template, so that selecting a fragment from a template that
+ *   has already been parsed does not require parsing it again.
+ * </p>
+ * <p>
+ *   Only the simplest (and most common) kinds of markup selectors are indexed:
+ * </p>
+ * <ul>
+ *   <li><tt>name</tt>: elements with a <tt>th:fragment</tt> (or <tt>data-th-fragment</tt> in HTML) attribute
+ *       declaring a fragment with that name (with or without parameters).</li>
+ *   <li><tt>#id</tt>: elements with that <tt>id</tt>.</li>
+ * </ul>
+ * <p>
+ *   Selection follows the same rules the parser applies for these selectors: all matching elements in the
+ *   template are selected in document order, and an element matching inside an already-selected one is simply
+ *   part of it. If a name selector could also refer to an element name used in the template, the selection is
+ *   considered ambiguous and is not served by the index.
+ * </p>
+ * <p>
+ *   Objects of this class are immutable, and therefore <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+final class FragmentIndex {
+
+    private static final int[] NO_RANGES = new int[0];
+
+    private static final String FRAGMENT_ATTR_NAME = "fragment";
+    private static final String ID_ATTR_NAME = "id";
+
+    // Ranges of events for each selector, as consecutive [start, end) pairs in document order
+    private final Map<String,int[]> rangesBySelector;
+    private final Set<String> elementNames;
+    private final boolean caseSensitive;
+
+
+
+
+    static boolean isIndexableSelector(final String selector) {
+        final int len = selector.length();
+        final int start = (len > 0 && selector.charAt(0) == '#'? 1 : 0);
+        if (start == len) {
+            return false;
+        }
+        for (int i = start; i < len; i++) {
+            final char c = selector.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+
+    static FragmentIndex build(
+            final EngineEventQueue queue, final TemplateMode templateMode, final String standardDialectPrefix) {
+
+        final boolean caseSensitive = !templateMode.isHTML();
+
+        final Map<String,List<Integer>> ranges = new HashMap<String, List<Integer>>(10);
+        final Set<String> elementNames = new HashSet<String>(30);
+
+        // Elements matching some selector that have been opened but not closed yet
+        final List<String> openSelectors = new ArrayList<String>(5);
+        final List<int[]> openStartsAndDepths = new ArrayList<int[]>(5);
+
+        int depth = 0;
+
+        final int size = queue.size();
+        for (int i = 0; i < size; i++) {
+
+            final IEngineTemplateHandlerEvent event = queue.get(i);
+
+            if (event instanceof AbstractProcessableElementTag) {
+
+                final AbstractProcessableElementTag tag = (AbstractProcessableElementTag) event;
+                final String elementName = tag.getElementName();
+                elementNames.add(caseSensitive ? elementName : elementName.toLowerCase());
+
+                final List<String> selectors = computeSelectors(tag, caseSensitive, standardDialectPrefix);
+
+                if (event instanceof StandaloneElementTag) {
+                    for (final String selector : selectors) {
+                        if (!openSelectors.contains(selector)) {
+                            addRange(ranges, selector, i, i + 1);
+                        }
+                    }
+                } else {
+                    for (final String selector : selectors) {
+                        if (!openSelectors.contains(selector)) {
+                            openSelectors.add(selector);
+                            openStartsAndDepths.add(new int[] { i, depth });
+                        }
+                    }
+                    depth++;
+                }
+
+            } else if (event instanceof CloseElementTag || event instanceof AutoCloseElementTag) {
+
+                depth--;
+                for (int j = openSelectors.size() - 1; j >= 0; j--) {
+                    final int[] startAndDepth = openStartsAndDepths.get(j);
+                    if (startAndDepth[1] == depth) {
+                        addRange(ranges, openSelectors.get(j), startAndDepth[0], i + 1);
+                        openSelectors.remove(j);
+                        openStartsAndDepths.remove(j);
+                    }
+                }
+
+            }
+
+        }
+
+        // Unclosed elements extend until the end of the template
+        for (int j = 0; j < openSelectors.size(); j++) {
+            addRange(ranges, openSelectors.get(j), openStartsAndDepths.get(j)[0], size);
+        }
+
+        final Map<String,int[]> rangesBySelector = new HashMap<String, int[]>(ranges.size() + 1, 1.0f);
+        for (final Map.Entry<String,List<Integer>> rangesEntry : ranges.entrySet()) {
+            final List<Integer> selectorRanges = rangesEntry.getValue();
+            final int[] selectorRangesArray = new int[selectorRanges.size()];
+            for (int j = 0; j < selectorRangesArray.length; j++) {
+                selectorRangesArray[j] = selectorRanges.get(j).intValue();
+            }
+            rangesBySelector.put(rangesEntry.getKey(), selectorRangesArray);
+        }
+
+        return new FragmentIndex(rangesBySelector, elementNames, caseSensitive);
+
+    }
+
+
+
+
+    private FragmentIndex(final Map<String,int[]> rangesBySelector, final Set<String> elementNames,
+                          final boolean caseSensitive) {
+        super();
+        this.rangesBySelector = rangesBySelector;
+        this.elementNames = elementNames;
+        this.caseSensitive = caseSensitive;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the ranges of events selected by the specified selector, as consecutive [start, end) pairs.
+     * </p>
+     *
+     * @return the ranges (might be empty if nothing is selected), or null if the index cannot resolve the selector.
+     */
+    int[] getRanges(final String selector) {
+        if (!isIndexableSelector(selector)) {
+            return null;
+        }
+        if (selector.charAt(0) != '#' &&
+                this.elementNames.contains(this.caseSensitive? selector : selector.toLowerCase())) {
+            // The selector could also be selecting elements by name
+            return null;
+        }
+        final int[] ranges = this.rangesBySelector.get(selector);
+        return (ranges == null? NO_RANGES : ranges);
+    }
+
+
+
+
+    private static List<String> computeSelectors(
+            final AbstractProcessableElementTag tag, final boolean caseSensitive, final String standardDialectPrefix) {
+
+        final ElementAttributes attributes = (ElementAttributes) tag.getAttributes();
+        if (attributes.attributesSize == 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> selectors = null;
+        for (int i = 0; i < attributes.attributesSize; i++) {
+
+            final ElementAttribute attribute = attributes.attributes[i];
+            if (attribute.definition == null || attribute.value == null) {
+                continue;
+            }
+            final AttributeName attributeName = attribute.definition.getAttributeName();
+
+            if (attributeName.isPrefixed()) {
+                if (!FRAGMENT_ATTR_NAME.equals(attributeName.getAttributeName()) ||
+                        !(caseSensitive?
+                                attributeName.getPrefix().equals(standardDialectPrefix) :
+                                attributeName.getPrefix().equalsIgnoreCase(standardDialectPrefix))) {
+                    continue;
+                }
+                // A fragment with parameters matches both "name(" and "name (" prefixes
+                final String value = attribute.value;
+                selectors = addSelector(selectors, value);
+                for (int j = value.indexOf('('); j > 0; j = value.indexOf('(', j + 1)) {
+                    selectors = addSelector(selectors, value.substring(0, j));
+                    if (value.charAt(j - 1) == ' ') {
+                        selectors = addSelector(selectors, value.substring(0, j - 1));
+                    }
+                }
+            } else if (ID_ATTR_NAME.equals(attributeName.getAttributeName())) {
+                selectors = addSelector(selectors, "#" + attribute.value);
+            }
+
+        }
+
+        return (selectors == null? Collections.<String>emptyList() : selectors);
+
+    }
+
+
+    private static List<String> addSelector(final List<String> selectors, final String selector) {
+        // Selectors that could never be served by the index are not worth storing
+        if (!isIndexableSelector(selector)) {
+            return selectors;
+        }
+        final List<String> newSelectors = (selectors == null? new ArrayList<String>(2) : selectors);
+        if (!newSelectors.contains(selector)) {
+            newSelectors.add(selector);
+        }
+        return newSelectors;
+    }
+
+
+    private static void addRange(
+            final Map<String,List<Integer>> ranges, final String selector, final int start, final int end) {
+        List<Integer> selectorRanges = ranges.get(selector);
+        if (selectorRanges == null) {
+            selectorRanges = new ArrayList<Integer>(2);
+            ranges.put(selector, selectorRanges);
+        }
+        selectorRanges.add(Integer.valueOf(start));
+        selectorRanges.add(Integer.valueOf(end));
+    }
+
+
+}
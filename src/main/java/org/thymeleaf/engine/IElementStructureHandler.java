@@ -56,5 +56,7 @@ public interface IElementStructureHandler {
 
     public void iterateElement(final String iterVariableName, final String iterStatusVariableName, final Object iteratedObject);
 
+    public void cacheElementOutput(final String cacheKey); // uses the fragment output cache, if any
+
 }
 
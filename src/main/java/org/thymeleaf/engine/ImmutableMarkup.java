@@ -55,6 +55,7 @@
 public class ImmutableMarkup implements IMarkup {
 
     private final Markup markup;
+    private volatile EventLoader eventLoader = null;
 
 
     // Package-protected constructor, because we don't want anyone creating these objects from outside the engine.
@@ -87,13 +88,35 @@ public final TemplateMode getTemplateMode() {
 
 
 
+    // Only used internally for markup whose events are kept in serialized form until they are first needed
+    // (see ParsedTemplateMarkupSerializer). Must be called before this object is published.
+    final void setEventLoader(final EventLoader eventLoader) {
+        this.eventLoader = eventLoader;
+    }
+
+
+    private Markup loadedMarkup() {
+        if (this.eventLoader != null) {
+            synchronized (this) {
+                final EventLoader loader = this.eventLoader;
+                if (loader != null) {
+                    loader.loadEvents(this.markup.getEventQueue());
+                    this.eventLoader = null;
+                }
+            }
+        }
+        return this.markup;
+    }
+
+
+
     public int size() {
-        return this.markup.size();
+        return loadedMarkup().size();
     }
 
 
     public ITemplateHandlerEvent get(final int pos) {
-        return immutableEvent(this.markup.get(pos));
+        return immutableEvent(loadedMarkup().get(pos));
     }
 
 
@@ -103,24 +126,24 @@ public ITemplateHandlerEvent get(final int pos) {
     // This will effectively turn our ParsedFragmentMarkup into immutable (though not really) and therefore allow us
     // to confidently cache these objects without worrying that anyone can modify them
     final Markup getInternalMarkup() {
-        return this.markup;
+        return loadedMarkup();
     }
 
 
 
     public Markup asMutable() {
-        return this.markup.cloneMarkup();
+        return loadedMarkup().cloneMarkup();
     }
 
 
 
     public final String computeMarkup() {
-        return this.markup.computeMarkup();
+        return loadedMarkup().computeMarkup();
     }
 
 
     public Markup cloneMarkup() {
-        return this.markup.cloneMarkup();
+        return loadedMarkup().cloneMarkup();
     }
 
 
@@ -826,6 +849,11 @@ public IUnmatchedCloseElementTag cloneElementTag() {
 
 
 
+    interface EventLoader {
+
+        void loadEvents(final EngineEventQueue queue);
+
+    }
 
 
-}
\ No newline at end of file
+}
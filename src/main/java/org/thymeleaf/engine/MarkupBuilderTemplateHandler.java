@@ -71,6 +71,11 @@ public Markup getMarkup() {
     }
 
 
+    public boolean isFragment() {
+        return this.fragment;
+    }
+
+
     // Note we are NOT implementing the setProcessingContext method, because we don't need it at all when just using
     // this handler for parsing (we are not processing anything!)
 
@@ -33,6 +33,7 @@
 public final class ParsedFragmentMarkup extends ImmutableMarkup {
 
     private final ICacheEntryValidity validity;
+    private volatile FragmentIndex fragmentIndex = null;
 
 
     // Package-protected constructor, because we don't want anyone creating these objects from outside the engine.
@@ -51,5 +52,20 @@ public final ICacheEntryValidity getValidity() {
         return this.validity;
     }
 
+
+    // Lazily built, as most parsed fragments will never have fragments selected from them. Building it more than
+    // once in case of concurrent access is harmless, as the result will be the same.
+    FragmentIndex getFragmentIndex() {
+        FragmentIndex index = this.fragmentIndex;
+        if (index == null) {
+            index =
+                    FragmentIndex.build(
+                            getInternalMarkup().getEventQueue(), getTemplateMode(),
+                            getConfiguration().getStandardDialectPrefix());
+            this.fragmentIndex = index;
+        }
+        return index;
+    }
+
     
 }
\ No newline at end of file
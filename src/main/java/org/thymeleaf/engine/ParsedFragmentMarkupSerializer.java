@@ -0,0 +1,102 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.cache.ICacheEntrySerializer;
+import org.thymeleaf.cache.ICacheEntryValidity;
+import org.thymeleaf.templatemode.TemplateMode;
+
+
+/**
+ * <p>
+ *   Serializer for {@link ParsedFragmentMarkup} objects, to be used with
+ *   {@link org.thymeleaf.cache.OffHeapCache} for storing the fragment cache out of the heap.
+ * </p>
+ * <p>
+ *   The engine configuration, template mode and validity are kept in the heap, and only the parsed events
+ *   are serialized.
+ * </p>
+ * <p>
+ *   Events are decoded lazily, the first time they are accessed, so that values checked as invalid
+ *   by the cache never pay for it, and compacted in the same way as on-heap cached markup. Decoding a
+ *   value builds its complete event graph, so {@link org.thymeleaf.cache.OffHeapCache} keeps the most
+ *   recently used decoded values in the heap and only decodes the rest.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class ParsedFragmentMarkupSerializer implements ICacheEntrySerializer<ParsedFragmentMarkup> {
+
+
+    public ParsedFragmentMarkupSerializer() {
+        super();
+    }
+
+
+
+    public Object computeHeapPart(final ParsedFragmentMarkup value) {
+        return new HeapPart(value.getConfiguration(), value.getTemplateMode(), value.getValidity());
+    }
+
+
+    public void serialize(final ParsedFragmentMarkup value, final DataOutputStream output) throws IOException {
+        final EngineEventQueue queue = value.getInternalMarkup().getEventQueue();
+        ParsedMarkupCodec.writeString(output, ParsedMarkupCodec.computeTemplateName(queue));
+        ParsedMarkupCodec.writeEvents(output, queue);
+    }
+
+
+    public ParsedFragmentMarkup deserialize(final Object heapPart, final ByteBuffer serialized) throws IOException {
+        final HeapPart part = (HeapPart) heapPart;
+        final ParsedFragmentMarkup markup =
+                new ParsedFragmentMarkup(part.configuration, part.templateMode, part.validity);
+        markup.setEventLoader(
+                new ParsedMarkupCodec.SerializedEvents(part.configuration, part.templateMode, serialized));
+        return markup;
+    }
+
+
+
+
+    private static final class HeapPart {
+
+        final IEngineConfiguration configuration;
+        final TemplateMode templateMode;
+        final ICacheEntryValidity validity;
+
+        HeapPart(final IEngineConfiguration configuration, final TemplateMode templateMode,
+                 final ICacheEntryValidity validity) {
+            super();
+            this.configuration = configuration;
+            this.templateMode = templateMode;
+            this.validity = validity;
+        }
+
+    }
+
+
+}
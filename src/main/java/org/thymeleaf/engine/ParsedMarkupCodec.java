@@ -0,0 +1,450 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.model.IElementAttributes;
+import org.thymeleaf.model.INode;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.text.ITextRepository;
+
+/**
+ * <p>
+ *   Binary encoding of the event sequences of parsed markup, used for storing parsed templates and fragments
+ *   outside of the object heap (see {@link ParsedMarkupFileStore} and {@link ParsedTemplateMarkupSerializer}).
+ * </p>
+ * <p>
+ *   Events are read back in the same way the parser would create them: names are obtained from the
+ *   text repository and processors are precomputed for every element tag.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+final class ParsedMarkupCodec {
+
+    private static final String UTF8 = "UTF-8";
+
+    private static final byte EVENT_DOCUMENT_START = 1;
+    private static final byte EVENT_DOCUMENT_END = 2;
+    private static final byte EVENT_XML_DECLARATION = 3;
+    private static final byte EVENT_DOCTYPE = 4;
+    private static final byte EVENT_CDATA_SECTION = 5;
+    private static final byte EVENT_COMMENT = 6;
+    private static final byte EVENT_TEXT = 7;
+    private static final byte EVENT_STANDALONE_ELEMENT = 8;
+    private static final byte EVENT_OPEN_ELEMENT = 9;
+    private static final byte EVENT_AUTO_OPEN_ELEMENT = 10;
+    private static final byte EVENT_CLOSE_ELEMENT = 11;
+    private static final byte EVENT_AUTO_CLOSE_ELEMENT = 12;
+    private static final byte EVENT_UNMATCHED_CLOSE_ELEMENT = 13;
+    private static final byte EVENT_PROCESSING_INSTRUCTION = 14;
+
+    private static final IElementAttributes.ValueQuotes[] VALUE_QUOTES = IElementAttributes.ValueQuotes.values();
+
+
+
+    private ParsedMarkupCodec() {
+        super();
+    }
+
+
+
+
+    /*
+     * Events in a piece of parsed markup all come from the same template, so this is only stored once
+     */
+    static String computeTemplateName(final EngineEventQueue queue) {
+        final int size = queue.size();
+        for (int i = 0; i < size; i++) {
+            final IEngineTemplateHandlerEvent event = queue.get(i);
+            if (event instanceof INode && ((INode)event).hasLocation()) {
+                return ((INode)event).getTemplateName();
+            }
+        }
+        return null;
+    }
+
+
+    static void writeEvents(final DataOutputStream output, final EngineEventQueue queue) throws IOException {
+
+        final int size = queue.size();
+        output.writeInt(size);
+
+        for (int i = 0; i < size; i++) {
+
+            final IEngineTemplateHandlerEvent event = queue.get(i);
+
+            if (event instanceof Text) {
+                final Text text = (Text) event;
+                output.writeByte(EVENT_TEXT);
+                writeString(output, text.getText());
+                writeLocation(output, text.getLine(), text.getCol());
+            } else if (event instanceof OpenElementTag) {
+                final OpenElementTag tag = (OpenElementTag) event;
+                output.writeByte(EVENT_OPEN_ELEMENT);
+                writeString(output, tag.getElementName());
+                writeLocation(output, tag.getLine(), tag.getCol());
+                writeAttributes(output, (ElementAttributes) tag.getAttributes());
+            } else if (event instanceof CloseElementTag) {
+                final CloseElementTag tag = (CloseElementTag) event;
+                output.writeByte(EVENT_CLOSE_ELEMENT);
+                writeString(output, tag.getElementName());
+                writeLocation(output, tag.getLine(), tag.getCol());
+            } else if (event instanceof StandaloneElementTag) {
+                final StandaloneElementTag tag = (StandaloneElementTag) event;
+                output.writeByte(EVENT_STANDALONE_ELEMENT);
+                writeString(output, tag.getElementName());
+                output.writeBoolean(tag.isMinimized());
+                writeLocation(output, tag.getLine(), tag.getCol());
+                writeAttributes(output, (ElementAttributes) tag.getAttributes());
+            } else if (event instanceof AutoOpenElementTag) {
+                final AutoOpenElementTag tag = (AutoOpenElementTag) event;
+                output.writeByte(EVENT_AUTO_OPEN_ELEMENT);
+                writeString(output, tag.getElementName());
+                writeLocation(output, tag.getLine(), tag.getCol());
+                writeAttributes(output, (ElementAttributes) tag.getAttributes());
+            } else if (event instanceof AutoCloseElementTag) {
+                final AutoCloseElementTag tag = (AutoCloseElementTag) event;
+                output.writeByte(EVENT_AUTO_CLOSE_ELEMENT);
+                writeString(output, tag.getElementName());
+                writeLocation(output, tag.getLine(), tag.getCol());
+            } else if (event instanceof UnmatchedCloseElementTag) {
+                final UnmatchedCloseElementTag tag = (UnmatchedCloseElementTag) event;
+                output.writeByte(EVENT_UNMATCHED_CLOSE_ELEMENT);
+                writeString(output, tag.getElementName());
+                writeLocation(output, tag.getLine(), tag.getCol());
+            } else if (event instanceof Comment) {
+                final Comment comment = (Comment) event;
+                output.writeByte(EVENT_COMMENT);
+                writeString(output, comment.getComment());
+                writeLocation(output, comment.getLine(), comment.getCol());
+            } else if (event instanceof CDATASection) {
+                final CDATASection cdataSection = (CDATASection) event;
+                output.writeByte(EVENT_CDATA_SECTION);
+                writeString(output, cdataSection.getCDATASection());
+                writeLocation(output, cdataSection.getLine(), cdataSection.getCol());
+            } else if (event instanceof DocType) {
+                final DocType docType = (DocType) event;
+                output.writeByte(EVENT_DOCTYPE);
+                writeString(output, docType.getDocType());
+                writeString(output, docType.getKeyword());
+                writeString(output, docType.getElementName());
+                writeString(output, docType.getType());
+                writeString(output, docType.getPublicId());
+                writeString(output, docType.getSystemId());
+                writeString(output, docType.getInternalSubset());
+                writeLocation(output, docType.getLine(), docType.getCol());
+            } else if (event instanceof XMLDeclaration) {
+                final XMLDeclaration xmlDeclaration = (XMLDeclaration) event;
+                output.writeByte(EVENT_XML_DECLARATION);
+                writeString(output, xmlDeclaration.getXmlDeclaration());
+                writeString(output, xmlDeclaration.getKeyword());
+                writeString(output, xmlDeclaration.getVersion());
+                writeString(output, xmlDeclaration.getEncoding());
+                writeString(output, xmlDeclaration.getStandalone());
+                writeLocation(output, xmlDeclaration.getLine(), xmlDeclaration.getCol());
+            } else if (event instanceof ProcessingInstruction) {
+                final ProcessingInstruction processingInstruction = (ProcessingInstruction) event;
+                output.writeByte(EVENT_PROCESSING_INSTRUCTION);
+                writeString(output, processingInstruction.getProcessingInstruction());
+                writeString(output, processingInstruction.getTarget());
+                writeString(output, processingInstruction.getContent());
+                writeLocation(output, processingInstruction.getLine(), processingInstruction.getCol());
+            } else if (event instanceof DocumentStart) {
+                final DocumentStart documentStart = (DocumentStart) event;
+                output.writeByte(EVENT_DOCUMENT_START);
+                writeLocation(output, documentStart.getLine(), documentStart.getCol());
+            } else if (event instanceof DocumentEnd) {
+                final DocumentEnd documentEnd = (DocumentEnd) event;
+                output.writeByte(EVENT_DOCUMENT_END);
+                writeLocation(output, documentEnd.getLine(), documentEnd.getCol());
+            } else {
+                throw new IOException("Cannot store events of class " + event.getClass().getName());
+            }
+
+        }
+
+    }
+
+
+    // Inner whitespace and attributes are written interleaved (ws0, attr0, ws1, attr1, ..., trailing ws), in the
+    // same order the parser creates them, so that replaying them in that order rebuilds exactly the same structure
+    private static void writeAttributes(final DataOutputStream output, final ElementAttributes attributes) throws IOException {
+        output.writeInt(attributes.attributesSize);
+        output.writeInt(attributes.innerWhiteSpacesSize);
+        final int max = Math.max(attributes.attributesSize, attributes.innerWhiteSpacesSize);
+        for (int i = 0; i < max; i++) {
+            if (i < attributes.innerWhiteSpacesSize) {
+                writeString(output, attributes.innerWhiteSpaces[i].whiteSpace);
+            }
+            if (i < attributes.attributesSize) {
+                final ElementAttribute attribute = attributes.attributes[i];
+                writeString(output, attribute.name);
+                writeString(output, attribute.operator);
+                writeString(output, attribute.value);
+                output.writeByte(attribute.valueQuotes == null? -1 : attribute.valueQuotes.ordinal());
+                writeLocation(output, attribute.line, attribute.col);
+            }
+        }
+    }
+
+
+    private static void writeLocation(final DataOutputStream output, final int line, final int col) throws IOException {
+        output.writeInt(line);
+        output.writeInt(col);
+    }
+
+
+    static void writeString(final DataOutputStream output, final String str) throws IOException {
+        if (str == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = str.getBytes(UTF8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+
+
+
+    static void readEvents(
+            final IEngineConfiguration configuration, final ByteBuffer buffer,
+            final String templateName, final TemplateMode templateMode, final EngineEventQueue queue)
+            throws IOException {
+
+        final ITextRepository textRepository = configuration.getTextRepository();
+        final ElementDefinitions elementDefinitions = configuration.getElementDefinitions();
+        final AttributeDefinitions attributeDefinitions = configuration.getAttributeDefinitions();
+
+        final int size = buffer.getInt();
+
+        for (int i = 0; i < size; i++) {
+
+            final byte eventType = buffer.get();
+
+            switch (eventType) {
+
+                case EVENT_TEXT: {
+                    final char[] text = readString(buffer).toCharArray();
+                    final Text event = new Text(textRepository);
+                    event.reset(text, 0, text.length, templateName, buffer.getInt(), buffer.getInt());
+                    // Precompute the whitespace flag, same as the parser does
+                    event.isWhitespace();
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_OPEN_ELEMENT: {
+                    final OpenElementTag event = new OpenElementTag(templateMode, elementDefinitions, attributeDefinitions);
+                    event.reset(readName(textRepository, buffer), templateName, buffer.getInt(), buffer.getInt());
+                    readAttributes(textRepository, buffer, (ElementAttributes) event.getAttributes());
+                    event.precomputeAssociatedProcessors();
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_CLOSE_ELEMENT: {
+                    final CloseElementTag event = new CloseElementTag(templateMode, elementDefinitions);
+                    event.reset(readName(textRepository, buffer), templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_STANDALONE_ELEMENT: {
+                    final StandaloneElementTag event =
+                            new StandaloneElementTag(templateMode, elementDefinitions, attributeDefinitions);
+                    final String elementName = readName(textRepository, buffer);
+                    final boolean minimized = (buffer.get() != 0);
+                    event.reset(elementName, minimized, templateName, buffer.getInt(), buffer.getInt());
+                    readAttributes(textRepository, buffer, (ElementAttributes) event.getAttributes());
+                    event.precomputeAssociatedProcessors();
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_AUTO_OPEN_ELEMENT: {
+                    final AutoOpenElementTag event =
+                            new AutoOpenElementTag(templateMode, elementDefinitions, attributeDefinitions);
+                    event.reset(readName(textRepository, buffer), templateName, buffer.getInt(), buffer.getInt());
+                    readAttributes(textRepository, buffer, (ElementAttributes) event.getAttributes());
+                    event.precomputeAssociatedProcessors();
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_AUTO_CLOSE_ELEMENT: {
+                    final AutoCloseElementTag event = new AutoCloseElementTag(templateMode, elementDefinitions);
+                    event.reset(readName(textRepository, buffer), templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_UNMATCHED_CLOSE_ELEMENT: {
+                    final UnmatchedCloseElementTag event = new UnmatchedCloseElementTag(templateMode, elementDefinitions);
+                    event.setUnmatchedCloseElementTag(
+                            readName(textRepository, buffer), templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_COMMENT: {
+                    final char[] comment = readString(buffer).toCharArray();
+                    final Comment event = new Comment(textRepository);
+                    event.reset(comment, 0, comment.length, templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_CDATA_SECTION: {
+                    final char[] cdataSection = readString(buffer).toCharArray();
+                    final CDATASection event = new CDATASection(textRepository);
+                    event.reset(cdataSection, 0, cdataSection.length, templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_DOCTYPE: {
+                    final DocType event = new DocType(textRepository);
+                    event.reset(
+                            readString(buffer), readString(buffer), readString(buffer), readString(buffer),
+                            readString(buffer), readString(buffer), readString(buffer),
+                            templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_XML_DECLARATION: {
+                    final XMLDeclaration event = new XMLDeclaration(textRepository);
+                    event.reset(
+                            readString(buffer), readString(buffer), readString(buffer), readString(buffer),
+                            readString(buffer), templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_PROCESSING_INSTRUCTION: {
+                    final ProcessingInstruction event = new ProcessingInstruction(textRepository);
+                    event.reset(
+                            readString(buffer), readString(buffer), readString(buffer),
+                            templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_DOCUMENT_START: {
+                    final DocumentStart event = new DocumentStart();
+                    event.reset(System.nanoTime(), templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                case EVENT_DOCUMENT_END: {
+                    final DocumentEnd event = new DocumentEnd();
+                    event.reset(System.nanoTime(), 0L, templateName, buffer.getInt(), buffer.getInt());
+                    queue.add(event, false);
+                    break;
+                }
+                default:
+                    throw new IOException("Unrecognized event type: " + eventType);
+
+            }
+
+        }
+
+    }
+
+
+    private static void readAttributes(
+            final ITextRepository textRepository, final ByteBuffer buffer, final ElementAttributes attributes)
+            throws IOException {
+        final int attributesSize = buffer.getInt();
+        final int innerWhiteSpacesSize = buffer.getInt();
+        final int max = Math.max(attributesSize, innerWhiteSpacesSize);
+        for (int i = 0; i < max; i++) {
+            if (i < innerWhiteSpacesSize) {
+                attributes.addInnerWhiteSpace(readName(textRepository, buffer));
+            }
+            if (i < attributesSize) {
+                final String name = readName(textRepository, buffer);
+                final String operator = readString(buffer);
+                final String value = readString(buffer);
+                final byte valueQuotes = buffer.get();
+                attributes.setAttribute(
+                        name, operator, value, (valueQuotes < 0? null : VALUE_QUOTES[valueQuotes]),
+                        buffer.getInt(), buffer.getInt(), false);
+            }
+        }
+    }
+
+
+    // Names (and inner whitespace) are very repetitive, so we get them through the text repository, as the parser does
+    private static String readName(final ITextRepository textRepository, final ByteBuffer buffer)
+            throws UnsupportedEncodingException {
+        return textRepository.getText(readString(buffer));
+    }
+
+
+    static String readString(final ByteBuffer buffer) throws UnsupportedEncodingException {
+        final int len = buffer.getInt();
+        if (len < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[len];
+        buffer.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+
+
+
+    /*
+     * Keeps the serialized form (template name followed by events) of a piece of parsed markup until its events
+     * are first needed. Decoding is the most expensive part of reading from a serialized cache (it creates the
+     * whole event graph and computes the processors of every element tag) so this avoids paying it for values
+     * that are discarded as invalid before being used. Decoded events are compacted exactly as on-heap cached
+     * markup is, so that values kept decoded by the cache are as cheap to process as on-heap cached ones.
+     */
+    static final class SerializedEvents implements ImmutableMarkup.EventLoader {
+
+        private final IEngineConfiguration configuration;
+        private final TemplateMode templateMode;
+        private final ByteBuffer serialized;
+
+        SerializedEvents(
+                final IEngineConfiguration configuration, final TemplateMode templateMode, final ByteBuffer serialized) {
+            super();
+            this.configuration = configuration;
+            this.templateMode = templateMode;
+            this.serialized = serialized;
+        }
+
+        public void loadEvents(final EngineEventQueue queue) {
+            // Buffer is duplicated so that this object could be loaded more than once without side effects
+            final ByteBuffer buffer = this.serialized.duplicate();
+            try {
+                final String templateName = readString(buffer);
+                readEvents(this.configuration, buffer, templateName, this.templateMode, queue);
+                // Same as when cached on-heap: shared text buffer and processors shareable with all clones
+                queue.compact();
+            } catch (final IOException e) {
+                throw new TemplateProcessingException("Could not decode serialized parsed markup", e);
+            }
+        }
+
+    }
+
+
+}
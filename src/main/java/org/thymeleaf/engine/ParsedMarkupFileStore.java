@@ -0,0 +1,209 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.DialectConfiguration;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.util.ETagWriter;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Persistent store of parsed markup (the event sequences of {@link ParsedTemplateMarkup} and
+ *   {@link ParsedFragmentMarkup} objects) in a local directory, so that templates do not need to be parsed
+ *   again after a restart of the JVM.
+ * </p>
+ * <p>
+ *   Each entry lives in its own file, named after its cache key, and contains a checksum of the template
+ *   source it was parsed from and a fingerprint of the engine configuration (dialects and prefixes) that
+ *   parsed it. Entries are only used if both match, and are simply overwritten otherwise.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+final class ParsedMarkupFileStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParsedMarkupFileStore.class);
+
+    private static final int MAGIC = 0x54484d31; // "THM1"
+    private static final int FORMAT_VERSION = 2;
+    private static final String FILE_SUFFIX = ".markup";
+
+    private final File directory;
+
+
+
+    ParsedMarkupFileStore(final File directory) {
+        super();
+        Validate.notNull(directory, "Directory cannot be null");
+        this.directory = directory;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Fills the (empty) target markup with the events stored for the specified key, if there is a stored entry
+     *   parsed from exactly the same template source and with the same engine configuration.
+     * </p>
+     *
+     * @return true if the markup could be loaded, false if the template will need to be parsed.
+     */
+    boolean load(final IEngineConfiguration configuration, final String key,
+                 final char[] source, final int sourceOffset, final int sourceLen,
+                 final String templateName, final Markup target) {
+
+        final File file = computeFile(key);
+        if (!file.isFile()) {
+            return false;
+        }
+
+        try {
+
+            final ByteBuffer buffer;
+            final FileInputStream inputStream = new FileInputStream(file);
+            try {
+                final FileChannel channel = inputStream.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            } finally {
+                inputStream.close();
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ||
+                    buffer.getLong() != computeConfigurationFingerprint(configuration, target.getTemplateMode()) ||
+                    buffer.getInt() != sourceLen ||
+                    buffer.getLong() != ETagWriter.computeHash(source, sourceOffset, sourceLen) ||
+                    !key.equals(ParsedMarkupCodec.readString(buffer))) {
+                return false;
+            }
+
+            ParsedMarkupCodec.readEvents(configuration, buffer, templateName, target.getTemplateMode(), target.getEventQueue());
+            return true;
+
+        } catch (final Exception e) {
+            // Whatever happened, the template will simply be parsed again (and the file overwritten)
+            target.reset();
+            if (logger.isDebugEnabled()) {
+                logger.debug(
+                        "[THYMELEAF][{}] Stored parsed markup for \"{}\" could not be loaded: {}",
+                        new Object[] {TemplateEngine.threadIndex(), key, e.getMessage()});
+            }
+            return false;
+        }
+
+    }
+
+
+
+
+    void store(final IEngineConfiguration configuration, final String key,
+               final char[] source, final int sourceOffset, final int sourceLen,
+               final Markup markup) {
+
+        try {
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(sourceLen + 1024);
+            final DataOutputStream output = new DataOutputStream(bytes);
+
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(computeConfigurationFingerprint(configuration, markup.getTemplateMode()));
+            output.writeInt(sourceLen);
+            output.writeLong(ETagWriter.computeHash(source, sourceOffset, sourceLen));
+            ParsedMarkupCodec.writeString(output, key);
+            ParsedMarkupCodec.writeEvents(output, markup.getEventQueue());
+            output.flush();
+
+            if (!this.directory.isDirectory() && !this.directory.mkdirs() && !this.directory.isDirectory()) {
+                throw new IOException("Cannot create directory " + this.directory.getPath());
+            }
+
+            // Write to a temporary file first, so that no other thread or JVM can ever read a half-written entry
+            final File file = computeFile(key);
+            final File tempFile = File.createTempFile(file.getName(), ".tmp", this.directory);
+            final FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+            try {
+                bytes.writeTo(fileOutputStream);
+            } finally {
+                fileOutputStream.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                // Some platforms will not rename over an existing file
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    tempFile.delete();
+                    throw new IOException("Cannot rename " + tempFile.getPath() + " to " + file.getPath());
+                }
+            }
+
+        } catch (final Exception e) {
+            // Not being able to store parsed markup is never fatal
+            logger.warn("[THYMELEAF][" + TemplateEngine.threadIndex() + "] Parsed markup for \"" + key + "\" could not be stored", e);
+        }
+
+    }
+
+
+
+
+    private File computeFile(final String key) {
+        final char[] keyChars = key.toCharArray();
+        return new File(
+                this.directory,
+                Long.toHexString(ETagWriter.computeHash(keyChars, 0, keyChars.length)) + FILE_SUFFIX);
+    }
+
+
+    private static long computeConfigurationFingerprint(
+            final IEngineConfiguration configuration, final TemplateMode templateMode) {
+        // Parsed events depend on the template mode and on the element/attribute definitions (i.e. dialects)
+        final StringBuilder strBuilder = new StringBuilder(100);
+        strBuilder.append(templateMode);
+        for (final DialectConfiguration dialectConfiguration : configuration.getDialectConfigurations()) {
+            strBuilder.append('|');
+            strBuilder.append(dialectConfiguration.getDialect().getClass().getName());
+            strBuilder.append(':');
+            strBuilder.append(dialectConfiguration.getPrefix());
+        }
+        final char[] fingerprint = strBuilder.toString().toCharArray();
+        return ETagWriter.computeHash(fingerprint, 0, fingerprint.length);
+    }
+
+
+}
@@ -0,0 +1,97 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.cache.ICacheEntrySerializer;
+import org.thymeleaf.templateresolver.TemplateResolution;
+
+
+/**
+ * <p>
+ *   Serializer for {@link ParsedTemplateMarkup} objects, to be used with
+ *   {@link org.thymeleaf.cache.OffHeapCache} for storing the template cache out of the heap.
+ * </p>
+ * <p>
+ *   The engine configuration and the template resolution are kept in the heap, and only the parsed events
+ *   are serialized.
+ * </p>
+ * <p>
+ *   Events are decoded lazily, the first time they are accessed, so that values checked as invalid
+ *   by the cache never pay for it, and compacted in the same way as on-heap cached markup. Decoding a
+ *   value builds its complete event graph, so {@link org.thymeleaf.cache.OffHeapCache} keeps the most
+ *   recently used decoded values in the heap and only decodes the rest.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class ParsedTemplateMarkupSerializer implements ICacheEntrySerializer<ParsedTemplateMarkup> {
+
+
+    public ParsedTemplateMarkupSerializer() {
+        super();
+    }
+
+
+
+    public Object computeHeapPart(final ParsedTemplateMarkup value) {
+        return new HeapPart(value.getConfiguration(), value.getTemplateResolution());
+    }
+
+
+    public void serialize(final ParsedTemplateMarkup value, final DataOutputStream output) throws IOException {
+        final EngineEventQueue queue = value.getInternalMarkup().getEventQueue();
+        ParsedMarkupCodec.writeString(output, ParsedMarkupCodec.computeTemplateName(queue));
+        ParsedMarkupCodec.writeEvents(output, queue);
+    }
+
+
+    public ParsedTemplateMarkup deserialize(final Object heapPart, final ByteBuffer serialized) throws IOException {
+        final HeapPart part = (HeapPart) heapPart;
+        final ParsedTemplateMarkup markup = new ParsedTemplateMarkup(part.configuration, part.templateResolution);
+        markup.setEventLoader(
+                new ParsedMarkupCodec.SerializedEvents(part.configuration, markup.getTemplateMode(), serialized));
+        return markup;
+    }
+
+
+
+
+    private static final class HeapPart {
+
+        final IEngineConfiguration configuration;
+        final TemplateResolution templateResolution;
+
+        HeapPart(final IEngineConfiguration configuration, final TemplateResolution templateResolution) {
+            super();
+            this.configuration = configuration;
+            this.templateResolution = templateResolution;
+        }
+
+    }
+
+
+}
@@ -19,18 +19,24 @@
  */
 package org.thymeleaf.engine;
 
+import java.io.CharArrayWriter;
 import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheManager;
 import org.thymeleaf.context.ILocalVariableAwareVariablesMap;
 import org.thymeleaf.context.ITemplateProcessingContext;
 import org.thymeleaf.context.IVariablesMap;
@@ -166,6 +172,10 @@ public final class ProcessorTemplateHandler extends AbstractTemplateHandler {
     private IterationArtifacts[] iterationArtifacts = null;
     private int iterationArtifactsIndex = 0;
 
+    // The iteration queue currently being replayed (if any). Events coming from it can be gathered into nested
+    // iterations without cloning them again, as queued events are immutable (handlers receive buffered copies).
+    private EngineEventQueue replayedIterationQueue = null;
+
     // Used in the cases when a standalone tag is converted into an open+close one (i.e. a body is added).
     private OpenElementTag[] standaloneOpenTagBuffers = null;
     private CloseElementTag[] standaloneCloseTagBuffers = null;
@@ -179,6 +189,14 @@ public final class ProcessorTemplateHandler extends AbstractTemplateHandler {
     // template mode disregarding the name of the element.
     private IText lastTextEvent = null;
 
+    // Used for caching the rendered output of elements (tag and body) into the fragment output cache. Captures can be
+    // nested, so they are kept as a stack indexed by outputCaptureSpecsIndex. Cached output is written by means of its
+    // own Text buffer so that it never interferes with the use of 'textBuffer' in queues.
+    private ICache<String,char[]> fragmentOutputCache = null;
+    private OutputCaptureSpec[] outputCaptureSpecs = null;
+    private int outputCaptureSpecsIndex = 0;
+    private Text cachedOutputTextBuffer = null;
+
 
 
 
@@ -247,6 +265,11 @@ public void setProcessingContext(final ITemplateProcessingContext processingCont
         this.suspensionSpec = new SuspensionSpec(this.templateMode, this.configuration);
         this.iterationSpec = new IterationSpec(this.templateMode, this.configuration);
 
+        // Cache (if any) used for storing the output of elements marked as cacheable, and buffer for writing it
+        final ICacheManager cacheManager = this.configuration.getCacheManager();
+        this.fragmentOutputCache = (cacheManager == null? null : cacheManager.getFragmentOutputCache());
+        this.cachedOutputTextBuffer = new Text(this.configuration.getTextRepository());
+
         // Flags used for quickly determining if a non-element structure might have to be processed or not
         this.hasDocumentProcessors = !this.configuration.getDocumentProcessors(this.templateMode).isEmpty();
         this.hasCDATASectionProcessors = !this.configuration.getCDATASectionProcessors(this.templateMode).isEmpty();
@@ -606,7 +629,9 @@ public void handleText(final IText itext) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
-            this.iterationSpec.iterationQueue.add(Text.asEngineText(this.configuration, itext, true), false);
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(itext);
+            this.iterationSpec.iterationQueue.add(
+                    (replayedEvent != null? replayedEvent : Text.asEngineText(this.configuration, itext, true)), false);
             return;
         }
 
@@ -709,7 +734,9 @@ public void handleComment(final IComment icomment) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
-            this.iterationSpec.iterationQueue.add(Comment.asEngineComment(this.configuration, icomment, true), false);
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(icomment);
+            this.iterationSpec.iterationQueue.add(
+                    (replayedEvent != null? replayedEvent : Comment.asEngineComment(this.configuration, icomment, true)), false);
             return;
         }
 
@@ -811,7 +838,9 @@ public void handleCDATASection(final ICDATASection icdataSection) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
-            this.iterationSpec.iterationQueue.add(CDATASection.asEngineCDATASection(this.configuration, icdataSection, true), false);
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(icdataSection);
+            this.iterationSpec.iterationQueue.add(
+                    (replayedEvent != null? replayedEvent : CDATASection.asEngineCDATASection(this.configuration, icdataSection, true)), false);
             return;
         }
 
@@ -915,9 +944,11 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(istandaloneElementTag);
             this.iterationSpec.iterationQueue.add(
-                    StandaloneElementTag.asEngineStandaloneElementTag(
-                            this.templateMode, this.configuration, istandaloneElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            StandaloneElementTag.asEngineStandaloneElementTag(this.templateMode, this.configuration, istandaloneElementTag, true)), false);
             return;
         }
 
@@ -1084,6 +1115,26 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
                     // Complete exit of the handler method: no more processing to do from here
                     return;
 
+                } else if (this.elementStructureHandler.cacheElementOutput) {
+
+                    final String cacheKey = this.elementStructureHandler.cacheElementOutputKey;
+                    final char[] cachedOutput =
+                            (this.fragmentOutputCache == null? null : this.fragmentOutputCache.get(cacheKey));
+
+                    if (cachedOutput != null) {
+                        // The whole element will be replaced by its cached output, which is never processable. It is
+                        // written directly to the next handler, so that it does not need to be converted into a String
+                        queue.reset(); // Remove any previous results on the queue
+                        this.cachedOutputTextBuffer.reset(
+                                cachedOutput, 0, cachedOutput.length,
+                                standaloneElementTag.getTemplateName(), standaloneElementTag.getLine(), standaloneElementTag.getCol());
+                        getNext().handleText(this.cachedOutputTextBuffer);
+                        tagRemoved = true;
+                    } else if (this.fragmentOutputCache != null) {
+                        // From now on, everything this element outputs (including the tag itself) will be captured
+                        startOutputCapture(cacheKey);
+                    }
+
                 } else if (this.elementStructureHandler.setBodyText) {
 
                     queue.reset(); // Remove any previous results on the queue
@@ -1276,6 +1327,15 @@ public void handleStandaloneElement(final IStandaloneElementTag istandaloneEleme
         queue.process(queueProcessable ? this : getNext(), true);
 
 
+        /*
+         * FINISH CAPTURING THE OUTPUT of this element, if it was being captured for the fragment output cache
+         */
+        if (this.outputCaptureSpecsIndex > 0 &&
+                this.outputCaptureSpecs[this.outputCaptureSpecsIndex - 1].markupLevel == this.markupLevel) {
+            finishOutputCapture();
+        }
+
+
         /*
          * DECREASE THE VARIABLES MAP LEVEL once we have executed all the processors (and maybe a body if we added
          * one to the tag converting it into an open tag)
@@ -1313,8 +1373,11 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(iopenElementTag);
             this.iterationSpec.iterationQueue.add(
-                    OpenElementTag.asEngineOpenElementTag(this.templateMode, this.configuration, iopenElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            OpenElementTag.asEngineOpenElementTag(this.templateMode, this.configuration, iopenElementTag, true)), false);
             increaseMarkupLevel();
             return;
         }
@@ -1494,6 +1557,28 @@ public void handleOpenElement(final IOpenElementTag iopenElementTag) {
                     // Nothing else to be done by this handler... let's just queue the rest of the events to be iterated
                     return;
 
+                } else if (this.elementStructureHandler.cacheElementOutput) {
+
+                    final String cacheKey = this.elementStructureHandler.cacheElementOutputKey;
+                    final char[] cachedOutput =
+                            (this.fragmentOutputCache == null? null : this.fragmentOutputCache.get(cacheKey));
+
+                    if (cachedOutput != null) {
+                        // The whole element will be replaced by its cached output, which is never processable. It is
+                        // written directly to the next handler, so that it does not need to be converted into a String
+                        queue.reset(); // Remove any previous results on the queue
+                        this.cachedOutputTextBuffer.reset(
+                                cachedOutput, 0, cachedOutput.length,
+                                openElementTag.getTemplateName(), openElementTag.getLine(), openElementTag.getCol());
+                        getNext().handleText(this.cachedOutputTextBuffer);
+                        tagRemoved = true;
+                        allowedElementCountInBody = 0;
+                        allowedNonElementStructuresInBody = false;
+                    } else if (this.fragmentOutputCache != null) {
+                        // From now on, everything this element outputs (including the tag itself) will be captured
+                        startOutputCapture(cacheKey);
+                    }
+
                 } else if (this.elementStructureHandler.setBodyText) {
 
                     queue.reset(); // Remove any previous results on the queue
@@ -1690,8 +1775,11 @@ public void handleAutoOpenElement(final IAutoOpenElementTag iautoOpenElementTag)
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(iautoOpenElementTag);
             this.iterationSpec.iterationQueue.add(
-                    AutoOpenElementTag.asEngineAutoOpenElementTag(this.templateMode, this.configuration, iautoOpenElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            AutoOpenElementTag.asEngineAutoOpenElementTag(this.templateMode, this.configuration, iautoOpenElementTag, true)), false);
             increaseMarkupLevel();
             return;
         }
@@ -1871,6 +1959,28 @@ public void handleAutoOpenElement(final IAutoOpenElementTag iautoOpenElementTag)
                     // Nothing else to be done by this handler... let's just queue the rest of the events to be iterated
                     return;
 
+                } else if (this.elementStructureHandler.cacheElementOutput) {
+
+                    final String cacheKey = this.elementStructureHandler.cacheElementOutputKey;
+                    final char[] cachedOutput =
+                            (this.fragmentOutputCache == null? null : this.fragmentOutputCache.get(cacheKey));
+
+                    if (cachedOutput != null) {
+                        // The whole element will be replaced by its cached output, which is never processable. It is
+                        // written directly to the next handler, so that it does not need to be converted into a String
+                        queue.reset(); // Remove any previous results on the queue
+                        this.cachedOutputTextBuffer.reset(
+                                cachedOutput, 0, cachedOutput.length,
+                                autoOpenElementTag.getTemplateName(), autoOpenElementTag.getLine(), autoOpenElementTag.getCol());
+                        getNext().handleText(this.cachedOutputTextBuffer);
+                        tagRemoved = true;
+                        allowedElementCountInBody = 0;
+                        allowedNonElementStructuresInBody = false;
+                    } else if (this.fragmentOutputCache != null) {
+                        // From now on, everything this element outputs (including the tag itself) will be captured
+                        startOutputCapture(cacheKey);
+                    }
+
                 } else if (this.elementStructureHandler.setBodyText) {
 
                     queue.reset(); // Remove any previous results on the queue
@@ -2068,8 +2178,11 @@ public void handleCloseElement(final ICloseElementTag icloseElementTag) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(icloseElementTag);
             this.iterationSpec.iterationQueue.add(
-                    CloseElementTag.asEngineCloseElementTag(this.templateMode, this.configuration, icloseElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            CloseElementTag.asEngineCloseElementTag(this.templateMode, this.configuration, icloseElementTag, true)), false);
             return;
         }
 
@@ -2084,8 +2197,11 @@ public void handleCloseElement(final ICloseElementTag icloseElementTag) {
         if (this.gatheringIteration && this.markupLevel + 1 == this.iterationSpec.fromMarkupLevel) {
 
             // Add the last tag: the closing one
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(icloseElementTag);
             this.iterationSpec.iterationQueue.add(
-                    CloseElementTag.asEngineCloseElementTag(this.templateMode, this.configuration, icloseElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            CloseElementTag.asEngineCloseElementTag(this.templateMode, this.configuration, icloseElementTag, true)), false);
 
             // Process the queue by iterating it
             processIteration();
@@ -2116,16 +2232,20 @@ public void handleCloseElement(final ICloseElementTag icloseElementTag) {
         }
 
         /*
-         * CHECK WHETHER THIS CLOSE TAG ITSELF MUST BE DISCARDED because we also discarded the open one (even if not necessarily the body)
+         * CHECK WHETHER THIS CLOSE TAG ITSELF MUST BE DISCARDED because we also discarded the open one (even if not
+         * necessarily the body), and if not, CALL THE NEXT HANDLER in the chain
          */
-        if (this.skipCloseTagLevels.matchAndPop(this.markupLevel)) {
-            return;
+        if (!this.skipCloseTagLevels.matchAndPop(this.markupLevel)) {
+            super.handleCloseElement(icloseElementTag);
         }
 
         /*
-         * CALL THE NEXT HANDLER in the chain
+         * FINISH CAPTURING THE OUTPUT of this element, if it was being captured for the fragment output cache
          */
-        super.handleCloseElement(icloseElementTag);
+        if (this.outputCaptureSpecsIndex > 0 &&
+                this.outputCaptureSpecs[this.outputCaptureSpecsIndex - 1].markupLevel == this.markupLevel) {
+            finishOutputCapture();
+        }
 
     }
 
@@ -2151,8 +2271,11 @@ public void handleAutoCloseElement(final IAutoCloseElementTag iautoCloseElementT
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(iautoCloseElementTag);
             this.iterationSpec.iterationQueue.add(
-                    AutoCloseElementTag.asEngineAutoCloseElementTag(this.templateMode, this.configuration, iautoCloseElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            AutoCloseElementTag.asEngineAutoCloseElementTag(this.templateMode, this.configuration, iautoCloseElementTag, true)), false);
             return;
         }
 
@@ -2167,8 +2290,11 @@ public void handleAutoCloseElement(final IAutoCloseElementTag iautoCloseElementT
         if (this.gatheringIteration && this.markupLevel + 1 == this.iterationSpec.fromMarkupLevel) {
 
             // Add the last tag: the closing one
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(iautoCloseElementTag);
             this.iterationSpec.iterationQueue.add(
-                    AutoCloseElementTag.asEngineAutoCloseElementTag(this.templateMode, this.configuration, iautoCloseElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            AutoCloseElementTag.asEngineAutoCloseElementTag(this.templateMode, this.configuration, iautoCloseElementTag, true)), false);
 
             // Process the queue by iterating it
             processIteration();
@@ -2199,16 +2325,20 @@ public void handleAutoCloseElement(final IAutoCloseElementTag iautoCloseElementT
         }
 
         /*
-         * CHECK WHETHER THIS CLOSE TAG ITSELF MUST BE DISCARDED because we also discarded the open one (even if not necessarily the body)
+         * CHECK WHETHER THIS CLOSE TAG ITSELF MUST BE DISCARDED because we also discarded the open one (even if not
+         * necessarily the body), and if not, CALL THE NEXT HANDLER in the chain
          */
-        if (this.skipCloseTagLevels.matchAndPop(this.markupLevel)) {
-            return;
+        if (!this.skipCloseTagLevels.matchAndPop(this.markupLevel)) {
+            super.handleAutoCloseElement(iautoCloseElementTag);
         }
 
         /*
-         * CALL THE NEXT HANDLER in the chain
+         * FINISH CAPTURING THE OUTPUT of this element, if it was being captured for the fragment output cache
          */
-        super.handleAutoCloseElement(iautoCloseElementTag);
+        if (this.outputCaptureSpecsIndex > 0 &&
+                this.outputCaptureSpecs[this.outputCaptureSpecsIndex - 1].markupLevel == this.markupLevel) {
+            finishOutputCapture();
+        }
 
     }
 
@@ -2230,8 +2360,11 @@ public void handleUnmatchedCloseElement(final IUnmatchedCloseElementTag iunmatch
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(iunmatchedCloseElementTag);
             this.iterationSpec.iterationQueue.add(
-                    UnmatchedCloseElementTag.asEngineUnmatchedCloseElementTag(this.templateMode, this.configuration, iunmatchedCloseElementTag, true), false);
+                    (replayedEvent != null?
+                            replayedEvent :
+                            UnmatchedCloseElementTag.asEngineUnmatchedCloseElementTag(this.templateMode, this.configuration, iunmatchedCloseElementTag, true)), false);
             return;
         }
 
@@ -2274,7 +2407,9 @@ public void handleDocType(final IDocType idocType) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
-            this.iterationSpec.iterationQueue.add(DocType.asEngineDocType(this.configuration, idocType, true), false);
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(idocType);
+            this.iterationSpec.iterationQueue.add(
+                    (replayedEvent != null? replayedEvent : DocType.asEngineDocType(this.configuration, idocType, true)), false);
             return;
         }
 
@@ -2378,8 +2513,9 @@ public void handleXMLDeclaration(final IXMLDeclaration ixmlDeclaration) {
          * CHECK WHETHER WE ARE IN THE MIDDLE OF AN ITERATION and we just need to cache this to the queue (for now)
          */
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(ixmlDeclaration);
             this.iterationSpec.iterationQueue.add(
-                    XMLDeclaration.asEngineXMLDeclaration(this.configuration, ixmlDeclaration, true), false);
+                    (replayedEvent != null? replayedEvent : XMLDeclaration.asEngineXMLDeclaration(this.configuration, ixmlDeclaration, true)), false);
             return;
         }
 
@@ -2482,8 +2618,9 @@ public void handleProcessingInstruction(final IProcessingInstruction iprocessing
 
         // Check whether we are in the middle of an iteration and we just need to cache this to the queue (for now)
         if (this.gatheringIteration && this.markupLevel >= this.iterationSpec.fromMarkupLevel) {
+            final IEngineTemplateHandlerEvent replayedEvent = getReplayedIterationEvent(iprocessingInstruction);
             this.iterationSpec.iterationQueue.add(
-                    ProcessingInstruction.asEngineProcessingInstruction(this.configuration, iprocessingInstruction, true), false);
+                    (replayedEvent != null? replayedEvent : ProcessingInstruction.asEngineProcessingInstruction(this.configuration, iprocessingInstruction, true)), false);
             return;
         }
 
@@ -2653,6 +2790,11 @@ private void processIteration() {
          * PERFORM THE ITERATION
          */
 
+        // Events replayed from this queue are immutable, so any nested iterations gathered while replaying it will
+        // be able to reuse them instead of cloning their buffered copies
+        final EngineEventQueue outerReplayedIterationQueue = this.replayedIterationQueue;
+        this.replayedIterationQueue = iterArtifacts.iterationQueue;
+
         while (iterator.hasNext()) {
 
             status.current = iterator.next();
@@ -2690,6 +2832,9 @@ private void processIteration() {
 
         }
 
+        // Restore the iteration queue being replayed at the outer level (if any)
+        this.replayedIterationQueue = outerReplayedIterationQueue;
+
         // Finally, clean just in case --even if the queued events should have already cleaned this
         this.suspensionSpec.reset();
         this.suspended = false;
@@ -2705,6 +2850,66 @@ private void processIteration() {
 
 
 
+    private IEngineTemplateHandlerEvent getReplayedIterationEvent(final Object event) {
+        if (this.replayedIterationQueue == null) {
+            return null;
+        }
+        return this.replayedIterationQueue.getProcessedEventForBuffer(event);
+    }
+
+
+
+
+    private void startOutputCapture(final String cacheKey) {
+
+        if (this.outputCaptureSpecs == null) {
+            this.outputCaptureSpecs = new OutputCaptureSpec[2];
+            Arrays.fill(this.outputCaptureSpecs, null);
+        }
+        if (this.outputCaptureSpecsIndex == this.outputCaptureSpecs.length) {
+            final OutputCaptureSpec[] newOutputCaptureSpecs = new OutputCaptureSpec[this.outputCaptureSpecs.length + 2];
+            Arrays.fill(newOutputCaptureSpecs, null);
+            System.arraycopy(this.outputCaptureSpecs, 0, newOutputCaptureSpecs, 0, this.outputCaptureSpecs.length);
+            this.outputCaptureSpecs = newOutputCaptureSpecs;
+        }
+        if (this.outputCaptureSpecs[this.outputCaptureSpecsIndex] == null) {
+            this.outputCaptureSpecs[this.outputCaptureSpecsIndex] = new OutputCaptureSpec(this.processingContext);
+        }
+        final OutputCaptureSpec captureSpec = this.outputCaptureSpecs[this.outputCaptureSpecsIndex];
+        this.outputCaptureSpecsIndex++;
+
+        captureSpec.markupLevel = this.markupLevel;
+        captureSpec.cacheKey = cacheKey;
+        captureSpec.capturedNext = getNext();
+
+        // Output will skip the rest of the handler chain (e.g. post-processors) until the capture is finished, and
+        // then it will be sent to it as a single text event -- which is exactly what cache hits will send too
+        setNext(captureSpec.outputHandler);
+
+    }
+
+
+    private void finishOutputCapture() {
+
+        this.outputCaptureSpecsIndex--;
+        final OutputCaptureSpec captureSpec = this.outputCaptureSpecs[this.outputCaptureSpecsIndex];
+
+        setNext(captureSpec.capturedNext);
+
+        final char[] output = captureSpec.writer.toCharArray();
+        final String cacheKey = captureSpec.cacheKey;
+        captureSpec.reset();
+
+        this.fragmentOutputCache.put(cacheKey, output);
+
+        this.cachedOutputTextBuffer.reset(output, 0, output.length, null, -1, -1);
+        getNext().handleText(this.cachedOutputTextBuffer);
+
+    }
+
+
+
+
     private static Integer computeIteratedObjectSize(final Object iteratedObject) {
         if (iteratedObject == null) {
             return 0;
@@ -2732,6 +2937,10 @@ private static Iterator<?> computeIteratedObjectIterator(final Object iteratedOb
         if (iteratedObject == null) {
             return Collections.EMPTY_LIST.iterator();
         }
+        if (iteratedObject instanceof List<?> && iteratedObject instanceof RandomAccess) {
+            // Avoid the creation (and the concurrent modification checks) of the list's own iterator
+            return new RandomAccessListIterator((List<?>)iteratedObject);
+        }
         if (iteratedObject instanceof Collection<?>) {
             return ((Collection<?>)iteratedObject).iterator();
         }
@@ -2739,25 +2948,34 @@ private static Iterator<?> computeIteratedObjectIterator(final Object iteratedOb
             return ((Map<?,?>)iteratedObject).entrySet().iterator();
         }
         if (iteratedObject.getClass().isArray()) {
-            return new Iterator<Object>() {
-
-                protected final Object array = iteratedObject;
-                protected final int length = Array.getLength(this.array);
-                private int i = 0;
-
-                public boolean hasNext() {
-                    return this.i < this.length;
-                }
-
-                public Object next() {
-                    return Array.get(this.array, i++);
-                }
-
-                public void remove() {
-                    throw new UnsupportedOperationException("Cannot remove from an array iterator");
-                }
-
-            };
+            // Arrays are iterated without using reflection (java.lang.reflect.Array), which is slow
+            if (iteratedObject instanceof Object[]) {
+                return new ObjectArrayIterator((Object[])iteratedObject);
+            }
+            if (iteratedObject instanceof int[]) {
+                return new IntArrayIterator((int[])iteratedObject);
+            }
+            if (iteratedObject instanceof long[]) {
+                return new LongArrayIterator((long[])iteratedObject);
+            }
+            if (iteratedObject instanceof double[]) {
+                return new DoubleArrayIterator((double[])iteratedObject);
+            }
+            if (iteratedObject instanceof float[]) {
+                return new FloatArrayIterator((float[])iteratedObject);
+            }
+            if (iteratedObject instanceof short[]) {
+                return new ShortArrayIterator((short[])iteratedObject);
+            }
+            if (iteratedObject instanceof byte[]) {
+                return new ByteArrayIterator((byte[])iteratedObject);
+            }
+            if (iteratedObject instanceof char[]) {
+                return new CharArrayIterator((char[])iteratedObject);
+            }
+            if (iteratedObject instanceof boolean[]) {
+                return new BooleanArrayIterator((boolean[])iteratedObject);
+            }
         }
         if (iteratedObject instanceof Iterable<?>) {
             return ((Iterable<?>)iteratedObject).iterator();
@@ -2771,6 +2989,201 @@ public void remove() {
 
 
 
+    /*
+     * Specialized iterators for the most common types of iterated objects: lists allowing random access, and
+     * arrays (both of objects and of primitive types). The size of all these structures is known beforehand.
+     */
+
+    private abstract static class AbstractIndexedIterator implements Iterator<Object> {
+
+        protected final int size;
+        protected int i = 0;
+
+        protected AbstractIndexedIterator(final int size) {
+            super();
+            this.size = size;
+        }
+
+        public final boolean hasNext() {
+            return this.i < this.size;
+        }
+
+        protected final int nextIndex() {
+            if (this.i >= this.size) {
+                throw new NoSuchElementException();
+            }
+            return this.i++;
+        }
+
+        public final void remove() {
+            throw new UnsupportedOperationException("Cannot remove from an iteration of this type");
+        }
+
+    }
+
+
+    private static final class RandomAccessListIterator extends AbstractIndexedIterator {
+
+        private final List<?> list;
+
+        RandomAccessListIterator(final List<?> list) {
+            super(list.size());
+            this.list = list;
+        }
+
+        public Object next() {
+            return this.list.get(nextIndex());
+        }
+
+    }
+
+
+    private static final class ObjectArrayIterator extends AbstractIndexedIterator {
+
+        private final Object[] array;
+
+        ObjectArrayIterator(final Object[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return this.array[nextIndex()];
+        }
+
+    }
+
+
+    private static final class IntArrayIterator extends AbstractIndexedIterator {
+
+        private final int[] array;
+
+        IntArrayIterator(final int[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Integer.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class LongArrayIterator extends AbstractIndexedIterator {
+
+        private final long[] array;
+
+        LongArrayIterator(final long[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Long.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class DoubleArrayIterator extends AbstractIndexedIterator {
+
+        private final double[] array;
+
+        DoubleArrayIterator(final double[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Double.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class FloatArrayIterator extends AbstractIndexedIterator {
+
+        private final float[] array;
+
+        FloatArrayIterator(final float[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Float.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class ShortArrayIterator extends AbstractIndexedIterator {
+
+        private final short[] array;
+
+        ShortArrayIterator(final short[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Short.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class ByteArrayIterator extends AbstractIndexedIterator {
+
+        private final byte[] array;
+
+        ByteArrayIterator(final byte[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Byte.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class CharArrayIterator extends AbstractIndexedIterator {
+
+        private final char[] array;
+
+        CharArrayIterator(final char[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Character.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+    private static final class BooleanArrayIterator extends AbstractIndexedIterator {
+
+        private final boolean[] array;
+
+        BooleanArrayIterator(final boolean[] array) {
+            super(array.length);
+            this.array = array;
+        }
+
+        public Object next() {
+            return Boolean.valueOf(this.array[nextIndex()]);
+        }
+
+    }
+
+
+
+
     private static final class LevelArray {
 
         private int[] array;
@@ -2868,6 +3281,32 @@ void reset() {
     }
 
 
+    private static final class OutputCaptureSpec {
+
+        int markupLevel;
+        String cacheKey;
+        ITemplateHandler capturedNext;
+        final CharArrayWriter writer;
+        final OutputTemplateHandler outputHandler;
+
+        OutputCaptureSpec(final ITemplateProcessingContext processingContext) {
+            super();
+            this.writer = new CharArrayWriter(512);
+            this.outputHandler = new OutputTemplateHandler(this.writer);
+            this.outputHandler.setProcessingContext(processingContext);
+            reset();
+        }
+
+        void reset() {
+            this.markupLevel = Integer.MAX_VALUE;
+            this.cacheKey = null;
+            this.capturedNext = null;
+            this.writer.reset();
+        }
+
+    }
+
+
     private static final class IterationArtifacts {
 
         final EngineEventQueue iterationQueue;
@@ -0,0 +1,75 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import org.thymeleaf.templateresolver.TemplateResolution;
+import org.thymeleaf.util.ETagWriter;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class RenderedTemplateOutput {
+
+    private final TemplateResolution templateResolution;
+    private final char[] output;
+    // Computed the first time it is needed (only ETag-computing writers need it), and kept so that ETags can be
+    // computed without hashing the output again. Computing it more than once concurrently is harmless.
+    private long outputHash = 0L;
+    private volatile boolean outputHashComputed = false;
+
+
+
+    // Package-protected constructor, because we don't want anyone creating these objects from outside the engine.
+    // Specifically, they will only be created from the TemplateManager.
+    RenderedTemplateOutput(final TemplateResolution templateResolution, final char[] output) {
+        super();
+        Validate.notNull(templateResolution, "Template Resolution cannot be null");
+        Validate.notNull(output, "Output cannot be null");
+        this.templateResolution = templateResolution;
+        this.output = output;
+    }
+
+
+    public TemplateResolution getTemplateResolution() {
+        return this.templateResolution;
+    }
+
+
+    // Note this returns the internal array itself, which should never be modified
+    public char[] getOutput() {
+        return this.output;
+    }
+
+
+    public long getOutputHash() {
+        if (!this.outputHashComputed) {
+            this.outputHash = ETagWriter.computeHash(this.output, 0, this.output.length);
+            this.outputHashComputed = true;
+        }
+        return this.outputHash;
+    }
+
+
+}
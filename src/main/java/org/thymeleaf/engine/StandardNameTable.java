@@ -0,0 +1,188 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.util.List;
+
+/**
+ * <p>
+ *   Immutable, case-insensitive lookup table for a fixed set of names (e.g. the standard HTML element or
+ *   attribute names), built as a perfect hash table: a table size and hash seed are chosen when the table
+ *   is created so that no two names fall into the same slot, so that any lookup needs to compute one hash and
+ *   perform (at most) one comparison, without any allocation.
+ * </p>
+ * <p>
+ *   Case-insensitivity is only applied to ASCII letters. Names differing in the case of any other characters
+ *   will simply not be found, and should be looked up by the caller in some other (slower) way.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+final class StandardNameTable<T> {
+
+    private static final int MAX_SEED_TRIES = 1000;
+
+    private final char[][] names;
+    private final T[] values;
+    private final int seed;
+    private final int shift;
+
+
+
+    @SuppressWarnings("unchecked")
+    StandardNameTable(final List<String> names, final List<T> values) {
+
+        super();
+
+        final int namesSize = names.size();
+        final char[][] foldedNames = new char[namesSize][];
+        final int[] hashes = new int[namesSize];
+        for (int i = 0; i < namesSize; i++) {
+            final String name = names.get(i);
+            foldedNames[i] = new char[name.length()];
+            for (int j = 0; j < foldedNames[i].length; j++) {
+                foldedNames[i][j] = fold(name.charAt(j));
+            }
+            hashes[i] = hash(foldedNames[i], 0, foldedNames[i].length);
+        }
+
+        // Start at a load factor of (at most) 0.25 and double the table until a seed making it perfect is found
+        int bits = 2;
+        while ((1 << bits) < namesSize * 4) {
+            bits++;
+        }
+
+        while (true) {
+
+            final int size = 1 << bits;
+            final int shift = 32 - bits;
+
+            int seed = 0x9E3779B9;
+            for (int tries = 0; tries < MAX_SEED_TRIES; tries++, seed += 0x61C88646) {
+
+                final int[] slots = new int[size]; // slot index + 1, so that 0 means empty
+                boolean collision = false;
+                for (int i = 0; !collision && i < namesSize; i++) {
+                    final int slot = (hashes[i] * (seed | 1)) >>> shift;
+                    if (slots[slot] != 0) {
+                        // The same name could be present more than once, pointing to the same value
+                        collision = !equals(foldedNames[slots[slot] - 1], foldedNames[i]);
+                    } else {
+                        slots[slot] = i + 1;
+                    }
+                }
+
+                if (!collision) {
+                    this.names = new char[size][];
+                    this.values = (T[]) new Object[size];
+                    for (int slot = 0; slot < size; slot++) {
+                        if (slots[slot] != 0) {
+                            this.names[slot] = foldedNames[slots[slot] - 1];
+                            this.values[slot] = values.get(slots[slot] - 1);
+                        }
+                    }
+                    this.seed = (seed | 1);
+                    this.shift = shift;
+                    return;
+                }
+
+            }
+
+            bits++;
+
+        }
+
+    }
+
+
+
+    T get(final char[] text, final int offset, final int len) {
+
+        final int slot = (hash(text, offset, len) * this.seed) >>> this.shift;
+        final char[] name = this.names[slot];
+        if (name == null || name.length != len) {
+            return null;
+        }
+        for (int i = 0; i < len; i++) {
+            if (name[i] != fold(text[offset + i])) {
+                return null;
+            }
+        }
+        return this.values[slot];
+
+    }
+
+
+    T get(final String text) {
+
+        final int len = text.length();
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + fold(text.charAt(i));
+        }
+
+        final int slot = (h * this.seed) >>> this.shift;
+        final char[] name = this.names[slot];
+        if (name == null || name.length != len) {
+            return null;
+        }
+        for (int i = 0; i < len; i++) {
+            if (name[i] != fold(text.charAt(i))) {
+                return null;
+            }
+        }
+        return this.values[slot];
+
+    }
+
+
+
+
+    private static char fold(final char c) {
+        return (c >= 'A' && c <= 'Z'? (char)(c + ('a' - 'A')) : c);
+    }
+
+
+    private static int hash(final char[] text, final int offset, final int len) {
+        int h = 0;
+        final int maxi = offset + len;
+        for (int i = offset; i < maxi; i++) {
+            h = 31 * h + fold(text[i]);
+        }
+        return h;
+    }
+
+
+    private static boolean equals(final char[] a, final char[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+}
@@ -19,10 +19,27 @@
  */
 package org.thymeleaf.engine;
 
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,13 +47,19 @@
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.cache.AlwaysValidCacheEntryValidity;
 import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.ICacheEntryValidity;
 import org.thymeleaf.cache.ICacheManager;
+import org.thymeleaf.cache.RefreshAheadTTLCacheEntryValidity;
+import org.thymeleaf.context.Context;
 import org.thymeleaf.context.IContext;
 import org.thymeleaf.context.ITemplateProcessingContext;
 import org.thymeleaf.context.TemplateProcessingContext;
 import org.thymeleaf.exceptions.TemplateInputException;
+import org.thymeleaf.exceptions.TemplateOutputException;
 import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.resource.CharArrayResource;
 import org.thymeleaf.resource.IResource;
+import org.thymeleaf.resource.ReaderResource;
 import org.thymeleaf.resource.StringResource;
 import org.thymeleaf.resourceresolver.IResourceResolver;
 import org.thymeleaf.templatemode.TemplateMode;
@@ -47,6 +70,7 @@
 import org.thymeleaf.templateresolver.StringTemplateResolver;
 import org.thymeleaf.templateresolver.TemplateResolution;
 import org.thymeleaf.text.ITextRepository;
+import org.thymeleaf.util.ETagWriter;
 import org.thymeleaf.util.Validate;
 
 
@@ -61,13 +85,39 @@ public final class TemplateManager {
 
     private static final Logger logger = LoggerFactory.getLogger(TemplateManager.class);
 
-    private static final ITemplateParser htmlParser = new HTMLTemplateParser(40,2048);
-    private static final ITemplateParser xmlParser = new XMLTemplateParser(40, 2048);
 
     private static final StringTemplateResolver STRING_TEMPLATE_RESOLVER = new StringTemplateResolver();
 
+    private static final int MAX_MEMOIZED_TEMPLATE_RESOLUTIONS = 10000;
+    private static final int MAX_UNRESOLVABLE_TEMPLATES = 1000;
+
     private final ICache<String,ParsedTemplateMarkup> templateCache; // might be null! (= no cache)
     private final ICache<String,ParsedFragmentMarkup> fragmentCache; // might be null! (= no cache)
+    private final ICache<String,RenderedTemplateOutput> templateOutputCache; // might be null! (= no cache)
+    private final ParsedMarkupFileStore parsedMarkupStore; // might be null! (= no persistent store)
+
+    private final HTMLTemplateParser htmlParser;
+    private final XMLTemplateParser xmlParser;
+    private final boolean minifyHTMLWhitespace;
+    private final boolean stripHTMLComments;
+
+    // Names of the context variables the output of templates depends on (sorted, so that keys are stable), and the
+    // template outputs being rendered at the moment (so that only one thread renders each key at a time)
+    private final String[] templateOutputCacheKeyVariableNames;
+    private final ConcurrentHashMap<String,FutureTask<RenderedTemplateOutput>> templateOutputsInProgress;
+
+    // Executor in charge of refreshing expired templates in the background (refresh-ahead). Lazily initialized,
+    // and never again once this template manager has been shut down.
+    private volatile ExecutorService templateRefreshExecutor = null;
+    private volatile boolean shutDown = false;
+
+    // Memoized results of walking the template resolver chain: the resolver that resolved each template name, and
+    // the template names no resolver could resolve. Both are kept along with the validities of the resolutions that
+    // failed (i.e. of the resolvers before the resolving one), which tell for how long the memoized result holds.
+    // Only cacheable resolutions are memoized, and these are keyed by template name only, so (as with the template
+    // cache) cacheable resolutions are expected not to depend on the context.
+    private final ConcurrentHashMap<String,MemoizedTemplateResolver> templateResolversByTemplate;
+    private final ConcurrentHashMap<String,ICacheEntryValidity[]> unresolvableTemplates;
 
 
 
@@ -79,22 +129,54 @@ public final class TemplateManager {
      * </p>
      *
      * @param configuration the configuration being currently used.
+     * @param managerConfiguration the settings for parsing and storing templates. Can be null, in which case
+     *                             defaults will be used.
      */
-    public TemplateManager(final IEngineConfiguration configuration) {
+    public TemplateManager(
+            final IEngineConfiguration configuration, final TemplateManagerConfiguration managerConfiguration) {
         
         super();
         
         Validate.notNull(configuration, "Configuration object cannot be null");
+
+        final TemplateManagerConfiguration settings =
+                (managerConfiguration == null? new TemplateManagerConfiguration() : managerConfiguration);
+
+        this.htmlParser = new HTMLTemplateParser(settings.getParserBufferPoolSize(), settings.getParserBufferSize());
+        this.xmlParser = new XMLTemplateParser(settings.getParserBufferPoolSize(), settings.getParserBufferSize());
+        this.minifyHTMLWhitespace = settings.getMinifyHTMLWhitespace();
+        this.stripHTMLComments = settings.getStripHTMLComments();
+
+        final File parsedTemplateCacheDirectory = settings.getParsedTemplateCacheDirectory();
+        this.parsedMarkupStore =
+                (parsedTemplateCacheDirectory == null? null : new ParsedMarkupFileStore(parsedTemplateCacheDirectory));
         
         final ICacheManager cacheManager = configuration.getCacheManager();
         if (cacheManager == null) {
             this.templateCache = null;
             this.fragmentCache = null;
+            this.templateOutputCache = null;
         } else {
             this.templateCache = cacheManager.getTemplateCache();
             this.fragmentCache = cacheManager.getFragmentCache();
+            this.templateOutputCache = cacheManager.getTemplateOutputCache();
         }
 
+        if (this.templateOutputCache == null) {
+            this.templateOutputCacheKeyVariableNames = null;
+            this.templateOutputsInProgress = null;
+        } else {
+            final Set<String> keyVariableNames = cacheManager.getTemplateOutputCacheKeyVariableNames();
+            final Set<String> sortedKeyVariableNames =
+                    (keyVariableNames == null? new TreeSet<String>() : new TreeSet<String>(keyVariableNames));
+            this.templateOutputCacheKeyVariableNames =
+                    sortedKeyVariableNames.toArray(new String[sortedKeyVariableNames.size()]);
+            this.templateOutputsInProgress = new ConcurrentHashMap<String, FutureTask<RenderedTemplateOutput>>(10);
+        }
+
+        this.templateResolversByTemplate = new ConcurrentHashMap<String, MemoizedTemplateResolver>(100);
+        this.unresolvableTemplates = new ConcurrentHashMap<String, ICacheEntryValidity[]>(10);
+
     }
     
 
@@ -110,6 +192,8 @@ public void clearTemplateCache() {
         if (this.templateCache != null) {
             this.templateCache.clear();
         }
+        this.templateResolversByTemplate.clear();
+        this.unresolvableTemplates.clear();
     }
 
     
@@ -126,6 +210,8 @@ public void clearTemplateCacheFor(final String template) {
         if (this.templateCache != null) {
             this.templateCache.clearKey(template);
         }
+        this.templateResolversByTemplate.remove(template);
+        this.unresolvableTemplates.remove(template);
     }
     
     
@@ -161,6 +247,121 @@ public void clearFragmentCacheFor(final String fragment) {
 
 
 
+    /**
+     * <p>
+     *   Returns the amount of parse operations (for any template mode) that could reuse a pooled parser buffer.
+     * </p>
+     *
+     * @return the parser buffer pool hit count.
+     */
+    public long getParserBufferPoolHitCount() {
+        return this.htmlParser.getBufferPoolHitCount() + this.xmlParser.getBufferPoolHitCount();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the amount of parse operations (for any template mode) that needed a new parser buffer to be
+     *   created because all pooled ones were in use.
+     * </p>
+     *
+     * @return the parser buffer pool miss count.
+     */
+    public long getParserBufferPoolMissCount() {
+        return this.htmlParser.getBufferPoolMissCount() + this.xmlParser.getBufferPoolMissCount();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Parses the specified templates in the background (using at most <tt>parallelism</tt> threads) so
+     *   that they are already in the template cache by the time they are first needed.
+     * </p>
+     * <p>
+     *   Failures are not propagated: they are logged and reported by the returned {@link TemplateWarmUp}.
+     * </p>
+     *
+     * @param configuration the engine configuration.
+     * @param templates the names of the templates to be warmed up.
+     * @param parallelism the maximum number of threads to be used.
+     * @return a handle for monitoring the progress of the warm-up.
+     */
+    public TemplateWarmUp warmUp(
+            final IEngineConfiguration configuration, final Collection<String> templates, final int parallelism) {
+
+        Validate.notNull(configuration, "Engine Configuration cannot be null");
+        Validate.notNull(templates, "Templates cannot be null");
+        Validate.isTrue(parallelism > 0, "Parallelism must be greater than zero");
+
+        final TemplateWarmUp warmUp = new TemplateWarmUp(templates.size());
+        if (templates.isEmpty()) {
+            return warmUp;
+        }
+
+        final AtomicInteger threadIndex = new AtomicInteger(0);
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(parallelism, templates.size()), new ThreadFactory() {
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread =
+                                new Thread(runnable, "thymeleaf-template-warm-up-" + threadIndex.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        // Templates are resolved and parsed with an empty context: no variables are needed for parsing
+        final IContext context = new Context();
+
+        for (final String template : templates) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        warmUpTemplate(configuration, context, template);
+                        warmUp.templateWarmedUp();
+                        if (logger.isDebugEnabled()) {
+                            logger.debug(
+                                    "[THYMELEAF][{}] Warmed up template \"{}\" ({}/{})",
+                                    new Object[] {TemplateEngine.threadIndex(), template,
+                                            Integer.valueOf(warmUp.getCompleted()), Integer.valueOf(warmUp.getTotal())});
+                        }
+                    } catch (final Throwable t) {
+                        warmUp.templateFailed(template, t);
+                        logger.warn("[THYMELEAF] Exception warming up template \"" + template + "\"", t);
+                    }
+                }
+            });
+        }
+
+        // Already submitted tasks will still be executed, after which the threads will die
+        executor.shutdown();
+
+        return warmUp;
+
+    }
+
+
+    // Templates are warmed up exactly as they will be needed for rendering them (i.e. as complete documents), as
+    // they are cached under the same keys 'renderTemplate' will look for
+    private void warmUpTemplate(final IEngineConfiguration configuration, final IContext context, final String template) {
+
+        final String cacheKey = computeCacheKey(configuration.getTextRepository(), template, (String[]) null);
+
+        if (this.templateCache != null && this.templateCache.get(cacheKey) != null) {
+            return;
+        }
+
+        final TemplateAndResourceResolution resolution = resolveTemplate(configuration, context, template);
+        if (resolution.templateResolution.getValidity().isCacheable()) {
+            parseAndCacheTemplate(configuration, resolution, null, cacheKey);
+        }
+
+    }
+
+
+
+
 
 
     public ParsedTemplateMarkup parseTemplate(
@@ -209,8 +410,9 @@ public ParsedTemplateMarkup parseTemplate(
         /*
          * PROCESS THE TEMPLATE
          */
-        processAsResource(
-                configuration, resolution.templateResolution.getTemplateMode(), false, resolution.resource, markupSelectors, builderHandler);
+        parseIntoMarkup(
+                configuration, resolution, false, markupSelectors, cacheKey,
+                builderHandler, parsedTemplate.getInternalMarkup());
 
 
         /*
@@ -218,6 +420,7 @@ public ParsedTemplateMarkup parseTemplate(
          */
         if (this.templateCache != null) {
             if (resolution.templateResolution.getValidity().isCacheable()) {
+                parsedTemplate.getInternalMarkup().getEventQueue().compact();
                 this.templateCache.put(cacheKey, parsedTemplate);
             }
         }
@@ -290,6 +493,7 @@ public ParsedFragmentMarkup parseTextualFragment(
          */
         if (this.fragmentCache != null) {
             if (parsedFragment.getValidity().isCacheable()) {
+                parsedFragment.getInternalMarkup().getEventQueue().compact();
                 this.fragmentCache.put(cacheKey, parsedFragment);
             }
         }
@@ -332,13 +536,63 @@ public ParsedFragmentMarkup parseTemplateFragment(
         }
 
 
+        /*
+         * If the fragment is selected by a simple selector, try to obtain it from the whole template instead of
+         * parsing the template again for it. This is only done if the whole template is already cached, or will be
+         * (i.e. it is cacheable): otherwise, parsing it whole would be more work than parsing only the fragment.
+         */
+        final boolean indexable =
+                (this.fragmentCache != null && markupSelectors != null && markupSelectors.length == 1 &&
+                 FragmentIndex.isIndexableSelector(markupSelectors[0]) &&
+                 configuration.getStandardDialectPrefix() != null);
+        final String wholeTemplateCacheKey =
+                (indexable? computeCacheKey(configuration.getTextRepository(), template, (String[]) null) : null);
+
+        boolean wholeTemplateCached = false;
+        if (indexable) {
+            final ParsedFragmentMarkup cachedWholeTemplate = this.fragmentCache.get(wholeTemplateCacheKey);
+            if (cachedWholeTemplate != null) {
+                wholeTemplateCached = true;
+                final ParsedFragmentMarkup indexedFragment =
+                        selectIndexedFragment(configuration, cachedWholeTemplate, markupSelectors[0], cacheKey);
+                if (indexedFragment != null) {
+                    return indexedFragment;
+                }
+            }
+        }
+
+
         /*
          * Resolve the template, obtain the IResource and its metadata (TemplateResolution)
          */
-        final TemplateAndResourceResolution resolution =
-                resolveTemplate(configuration, context, template);
+        TemplateAndResourceResolution resolution = resolveTemplate(configuration, context, template);
+
+
+        if (indexable && !wholeTemplateCached &&
+                resolution.templateResolution.getValidity().isCacheable() &&
+                !resolution.templateResolution.getTemplateMode().isText()) { // Selectors only apply to markup modes
+            final ParsedFragmentMarkup wholeTemplate =
+                    parseTemplateFragment(configuration, resolution, null, wholeTemplateCacheKey);
+            final ParsedFragmentMarkup indexedFragment =
+                    selectIndexedFragment(configuration, wholeTemplate, markupSelectors[0], cacheKey);
+            if (indexedFragment != null) {
+                return indexedFragment;
+            }
+            // The resource has already been consumed, so we need to resolve the template again
+            resolution = resolveTemplate(configuration, context, template);
+        }
 
 
+        return parseTemplateFragment(configuration, resolution, markupSelectors, cacheKey);
+
+    }
+
+
+
+    private ParsedFragmentMarkup parseTemplateFragment(
+            final IEngineConfiguration configuration, final TemplateAndResourceResolution resolution,
+            final String[] markupSelectors, final String cacheKey) {
+
         /*
          *  Create the Template Handler that will be in charge of building a ParsedTemplateMarkup object as the result of reading the template
          */
@@ -351,9 +605,9 @@ public ParsedFragmentMarkup parseTemplateFragment(
         /*
          * PROCESS THE TEMPLATE
          */
-        processAsResource(
-                configuration, resolution.templateResolution.getTemplateMode(), true,
-                resolution.resource, markupSelectors, builderHandler);
+        parseIntoMarkup(
+                configuration, resolution, true, markupSelectors, cacheKey,
+                builderHandler, parsedFragment.getInternalMarkup());
 
 
         /*
@@ -361,6 +615,7 @@ public ParsedFragmentMarkup parseTemplateFragment(
          */
         if (this.fragmentCache != null) {
             if (parsedFragment.getValidity().isCacheable()) {
+                parsedFragment.getInternalMarkup().getEventQueue().compact();
                 this.fragmentCache.put(cacheKey, parsedFragment);
             }
         }
@@ -371,6 +626,43 @@ public ParsedFragmentMarkup parseTemplateFragment(
 
 
 
+    private ParsedFragmentMarkup selectIndexedFragment(
+            final IEngineConfiguration configuration, final ParsedFragmentMarkup wholeTemplate,
+            final String markupSelector, final String cacheKey) {
+
+        if (wholeTemplate.getTemplateMode().isText()) {
+            // Markup selectors are only applied by the markup parsers
+            return null;
+        }
+
+        final int[] ranges = wholeTemplate.getFragmentIndex().getRanges(markupSelector);
+        if (ranges == null) {
+            // The index cannot tell what this selector selects, so the template will need to be parsed for it
+            return null;
+        }
+
+        final ParsedFragmentMarkup parsedFragment =
+                new ParsedFragmentMarkup(configuration, wholeTemplate.getTemplateMode(), wholeTemplate.getValidity());
+
+        final EngineEventQueue wholeQueue = wholeTemplate.getInternalMarkup().getEventQueue();
+        final EngineEventQueue fragmentQueue = parsedFragment.getInternalMarkup().getEventQueue();
+        for (int i = 0; i < ranges.length; i += 2) {
+            for (int j = ranges[i]; j < ranges[i + 1]; j++) {
+                fragmentQueue.add(wholeQueue.get(j), true);
+            }
+        }
+
+        if (parsedFragment.getValidity().isCacheable()) {
+            fragmentQueue.compact();
+            this.fragmentCache.put(cacheKey, parsedFragment);
+        }
+
+        return parsedFragment;
+
+    }
+
+
+
 
 
 
@@ -391,6 +683,32 @@ public void processTemplate(final IEngineConfiguration configuration, final ICon
         Validate.notNull(template, "Template cannot be null");
         // Markup Selectors CAN be null
 
+
+        /*
+         * If output is being cached, we will obtain it (from cache or by rendering it) and then simply write it
+         */
+        if (this.templateOutputCache != null) {
+            // Will be null if any of the key variables has a value that cannot be safely used in a key
+            final String outputCacheKey = computeOutputCacheKey(context, template, markupSelectors);
+            if (outputCacheKey != null) {
+                final RenderedTemplateOutput templateOutput =
+                        obtainTemplateOutput(configuration, context, template, markupSelectors, outputCacheKey);
+                writeTemplateOutput(templateOutput, writer);
+                return;
+            }
+        }
+
+
+        renderTemplate(configuration, context, template, markupSelectors, writer);
+
+    }
+
+
+
+
+    private TemplateResolution renderTemplate(final IEngineConfiguration configuration, final IContext context,
+                                              final String template, final String[] markupSelectors, final Writer writer) {
+
         final String cacheKey = computeCacheKey(configuration.getTextRepository(), template, markupSelectors);
 
 
@@ -407,7 +725,9 @@ public void processTemplate(final IEngineConfiguration configuration, final ICon
                 final ITemplateHandler processingHandlerChain = createTemplateProcessingHandlerChain(processingContext, writer);
                 // Process the cached template itself
                 processAsObject(cached, processingHandlerChain);
-                return;
+                // If the cached template's TTL has expired, refresh it in the background (it was still usable)
+                refreshCachedTemplateIfNeeded(configuration, template, markupSelectors, cacheKey, cached);
+                return cached.getTemplateResolution();
             }
         }
 
@@ -435,18 +755,12 @@ public void processTemplate(final IEngineConfiguration configuration, final ICon
          * If the resolved template is cacheable, so we will first read it as an object, cache it, and then process it
          */
         if (resolution.templateResolution.getValidity().isCacheable() && this.templateCache != null) {
-            // Create the handler chain to create the Template object
-            final ParsedTemplateMarkup parsedTemplate = new ParsedTemplateMarkup(processingContext.getConfiguration(), resolution.templateResolution);
-            final MarkupBuilderTemplateHandler builderHandler = new MarkupBuilderTemplateHandler(false, parsedTemplate.getInternalMarkup());
-            // Process the cached template itself
-            processAsResource(
-                    processingContext.getConfiguration(), processingContext.getTemplateMode(), false,
-                    resolution.resource, markupSelectors, builderHandler);
-            // Put the new template into cache
-            this.templateCache.put(cacheKey, parsedTemplate);
+            // Read the template and put it into cache
+            final ParsedTemplateMarkup parsedTemplate =
+                    parseAndCacheTemplate(processingContext.getConfiguration(), resolution, markupSelectors, cacheKey);
             // Process the read (+cached) template itself
             processAsObject(parsedTemplate, processingHandlerChain);
-            return;
+            return resolution.templateResolution;
         }
 
 
@@ -457,6 +771,251 @@ public void processTemplate(final IEngineConfiguration configuration, final ICon
                 processingContext.getConfiguration(), processingContext.getTemplateMode(), false,
                 resolution.resource, markupSelectors, processingHandlerChain);
 
+        return resolution.templateResolution;
+
+    }
+
+
+
+
+    // Reads a cacheable template as a complete document (as needed for rendering it) and puts it into the template
+    // cache, if there is one.
+    private ParsedTemplateMarkup parseAndCacheTemplate(
+            final IEngineConfiguration configuration, final TemplateAndResourceResolution resolution,
+            final String[] markupSelectors, final String cacheKey) {
+
+        final ParsedTemplateMarkup parsedTemplate =
+                parseTemplateDocument(configuration, resolution, markupSelectors, cacheKey);
+
+        if (this.templateCache != null) {
+            parsedTemplate.getInternalMarkup().getEventQueue().compact();
+            this.templateCache.put(cacheKey, parsedTemplate);
+        }
+
+        return parsedTemplate;
+
+    }
+
+
+    private ParsedTemplateMarkup parseTemplateDocument(
+            final IEngineConfiguration configuration, final TemplateAndResourceResolution resolution,
+            final String[] markupSelectors, final String cacheKey) {
+
+        final ParsedTemplateMarkup parsedTemplate = new ParsedTemplateMarkup(configuration, resolution.templateResolution);
+        final MarkupBuilderTemplateHandler builderHandler =
+                new MarkupBuilderTemplateHandler(false, parsedTemplate.getInternalMarkup());
+
+        parseIntoMarkup(
+                configuration, resolution, false, markupSelectors, cacheKey,
+                builderHandler, parsedTemplate.getInternalMarkup());
+
+        return parsedTemplate;
+
+    }
+
+
+
+
+    private void refreshCachedTemplateIfNeeded(
+            final IEngineConfiguration configuration,
+            final String template, final String[] markupSelectors, final String cacheKey,
+            final ParsedTemplateMarkup cached) {
+
+        final ICacheEntryValidity validity = cached.getTemplateResolution().getValidity();
+        if (!(validity instanceof RefreshAheadTTLCacheEntryValidity) || this.shutDown) {
+            return;
+        }
+        final RefreshAheadTTLCacheEntryValidity refreshAheadValidity = (RefreshAheadTTLCacheEntryValidity) validity;
+        if (!refreshAheadValidity.claimRefresh()) {
+            // Either no refresh is needed yet, or someone else is already taking care of it
+            return;
+        }
+
+        final ExecutorService executor = getTemplateRefreshExecutor();
+        if (executor == null) {
+            // Shut down in the meantime: the stale entry will be replaced at the request path
+            refreshAheadValidity.markRefreshFailed();
+            return;
+        }
+
+        // The context of the request that found the stale entry cannot be used: it belongs to that request, which
+        // will probably be over by the time the refresh runs. Templates are resolved with an engine-owned (empty)
+        // context instead, as they are when warming up.
+        final IContext refreshContext = new Context();
+
+        final Runnable refresh = new Runnable() {
+            public void run() {
+                try {
+                    final TemplateAndResourceResolution resolution =
+                            resolveTemplate(configuration, refreshContext, template);
+                    if (!resolution.templateResolution.getValidity().isCacheable()) {
+                        refreshAheadValidity.markRefreshFailed();
+                        TemplateManager.this.templateCache.clearKey(cacheKey);
+                        return;
+                    }
+                    // Read exactly as at the request path (including the persistent store and parsing options)
+                    final ParsedTemplateMarkup parsedTemplate =
+                            parseTemplateDocument(configuration, resolution, markupSelectors, cacheKey);
+                    // Cache entries are never overwritten by 'put', so the stale one has to be removed first
+                    TemplateManager.this.templateCache.clearKey(cacheKey);
+                    parsedTemplate.getInternalMarkup().getEventQueue().compact();
+                    TemplateManager.this.templateCache.put(cacheKey, parsedTemplate);
+                } catch (final Throwable t) {
+                    // The stale entry will not be used anymore, so that the error is raised at the request path
+                    refreshAheadValidity.markRefreshFailed();
+                    logger.warn(
+                            "[THYMELEAF] Exception refreshing cached template \"" + template + "\" in the background", t);
+                }
+            }
+        };
+
+        try {
+            executor.execute(refresh);
+        } catch (final RejectedExecutionException e) {
+            // Shut down in the meantime: the stale entry will be replaced at the request path
+            refreshAheadValidity.markRefreshFailed();
+        }
+
+    }
+
+
+    private ExecutorService getTemplateRefreshExecutor() {
+        if (this.templateRefreshExecutor == null) {
+            synchronized (this) {
+                if (this.shutDown) {
+                    return null;
+                }
+                if (this.templateRefreshExecutor == null) {
+                    this.templateRefreshExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                        public Thread newThread(final Runnable runnable) {
+                            final Thread thread = new Thread(runnable, "thymeleaf-template-refresh");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                }
+            }
+        }
+        return this.templateRefreshExecutor;
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Stops the background thread used for refreshing expired templates (if it was ever started). Templates
+     *   will not be refreshed in the background anymore after calling this method.
+     * </p>
+     * <p>
+     *   Meant to be called when the template engine is being disposed of (e.g. on application undeploy).
+     * </p>
+     */
+    public void shutdown() {
+        synchronized (this) {
+            this.shutDown = true;
+            if (this.templateRefreshExecutor != null) {
+                this.templateRefreshExecutor.shutdownNow();
+            }
+        }
+    }
+
+
+
+
+    private RenderedTemplateOutput obtainTemplateOutput(
+            final IEngineConfiguration configuration, final IContext context,
+            final String template, final String[] markupSelectors, final String outputCacheKey) {
+
+        final RenderedTemplateOutput cached = this.templateOutputCache.get(outputCacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        /*
+         * Only one thread will render the output for a specific key at a time: any other threads asking for the
+         * same key in the meantime will simply wait for the result (which, by definition, must be the same for them
+         * if it is cacheable)
+         */
+        final FutureTask<RenderedTemplateOutput> renderTask =
+                new FutureTask<RenderedTemplateOutput>(new Callable<RenderedTemplateOutput>() {
+                    public RenderedTemplateOutput call() {
+                        final RenderedTemplateOutput templateOutput =
+                                renderTemplateOutput(configuration, context, template, markupSelectors);
+                        final TemplateResolution templateResolution = templateOutput.getTemplateResolution();
+                        if (templateResolution.getValidity().isCacheable()) {
+                            TemplateManager.this.templateOutputCache.put(outputCacheKey, templateOutput);
+                        }
+                        return templateOutput;
+                    }
+                });
+
+        FutureTask<RenderedTemplateOutput> inProgressTask =
+                this.templateOutputsInProgress.putIfAbsent(outputCacheKey, renderTask);
+        if (inProgressTask == null) {
+            inProgressTask = renderTask;
+            try {
+                renderTask.run();
+            } finally {
+                this.templateOutputsInProgress.remove(outputCacheKey, renderTask);
+            }
+        }
+
+        final RenderedTemplateOutput templateOutput;
+        try {
+            templateOutput = inProgressTask.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemplateProcessingException(
+                    "Interrupted while waiting for the output of template \"" + template + "\" to be rendered", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new TemplateProcessingException(
+                    "An exception happened during the rendering of template \"" + template + "\"", cause);
+        }
+
+        if (inProgressTask == renderTask || templateOutput.getTemplateResolution().getValidity().isCacheable()) {
+            return templateOutput;
+        }
+
+        // The output rendered by another thread was not cacheable, so it is not necessarily the same we would
+        // have obtained: we have to render our own
+        return renderTemplateOutput(configuration, context, template, markupSelectors);
+
+    }
+
+
+    private RenderedTemplateOutput renderTemplateOutput(
+            final IEngineConfiguration configuration, final IContext context,
+            final String template, final String[] markupSelectors) {
+        final CharArrayWriter outputWriter = new CharArrayWriter(1024);
+        final TemplateResolution templateResolution =
+                renderTemplate(configuration, context, template, markupSelectors, outputWriter);
+        return new RenderedTemplateOutput(templateResolution, outputWriter.toCharArray());
+    }
+
+
+
+
+    private static void writeTemplateOutput(final RenderedTemplateOutput templateOutput, final Writer writer) {
+        try {
+            if (writer instanceof ETagWriter) {
+                // The hash of the output is already known, so there is no need to compute it again
+                ((ETagWriter) writer).writePrehashed(templateOutput.getOutput(), templateOutput.getOutputHash());
+            } else {
+                writer.write(templateOutput.getOutput());
+            }
+        } catch (final IOException e) {
+            throw new TemplateOutputException(
+                    "An error happened during template rendering",
+                    templateOutput.getTemplateResolution().getTemplateName(), -1, -1, e);
+        }
     }
 
 
@@ -520,15 +1079,9 @@ public void processTextualTemplate(final IEngineConfiguration configuration, fin
          * If the resolved template is cacheable, so we will first read it as an object, cache it, and then process it
          */
         if (resolution.templateResolution.getValidity().isCacheable() && this.templateCache != null) {
-            // Create the handler chain to create the Template object
-            final ParsedTemplateMarkup parsedTemplate = new ParsedTemplateMarkup(processingContext.getConfiguration(), resolution.templateResolution);
-            final MarkupBuilderTemplateHandler builderHandler = new MarkupBuilderTemplateHandler(false, parsedTemplate.getInternalMarkup());
-            // Process the cached template itself
-            processAsResource(
-                    processingContext.getConfiguration(), processingContext.getTemplateMode(), false,
-                    resolution.resource, markupSelectors, builderHandler);
-            // Put the new template into cache
-            this.templateCache.put(cacheKey, parsedTemplate);
+            // Read the template and put it into cache
+            final ParsedTemplateMarkup parsedTemplate =
+                    parseAndCacheTemplate(processingContext.getConfiguration(), resolution, markupSelectors, cacheKey);
             // Process the read (+cached) template itself
             processAsObject(parsedTemplate, processingHandlerChain);
             return;
@@ -555,11 +1108,56 @@ public void processTextualTemplate(final IEngineConfiguration configuration, fin
 
 
 
-    private static TemplateAndResourceResolution resolveTemplate(final IEngineConfiguration configuration, final IContext context, final String template) {
+    private TemplateAndResourceResolution resolveTemplate(final IEngineConfiguration configuration, final IContext context, final String template) {
+
+        /*
+         * Names that were already found not to be resolvable by any resolver (with cacheable results) fail fast,
+         * for as long as all the resolutions that failed for them are still valid.
+         */
+        final ICacheEntryValidity[] unresolvableValidities = this.unresolvableTemplates.get(template);
+        if (unresolvableValidities != null) {
+            if (areStillValid(unresolvableValidities)) {
+                throw new TemplateInputException(
+                        "Error resolving template \"" + template + "\", " +
+                        "template might not exist or might not be accessible by " +
+                        "any of the configured Template Resolvers");
+            }
+            this.unresolvableTemplates.remove(template, unresolvableValidities);
+        }
+
+        /*
+         * If we already know which resolver resolves this template, go directly to it. Should the resource have
+         * disappeared in the meantime, or should any of the resolvers before it in the chain now be able to resolve
+         * it (i.e. their failed resolutions are not valid anymore), we will forget about it and walk the whole
+         * chain again.
+         */
+        final MemoizedTemplateResolver memoizedTemplateResolver = this.templateResolversByTemplate.get(template);
+        if (memoizedTemplateResolver != null && areStillValid(memoizedTemplateResolver.failedValidities)) {
+            final TemplateResolution memoizedTemplateResolution =
+                    memoizedTemplateResolver.templateResolver.resolveTemplate(configuration, context, template);
+            if (memoizedTemplateResolution != null) {
+                final IResource memoizedTemplateResource =
+                        memoizedTemplateResolution.getResourceResolver().resolveResource(
+                                configuration, context, memoizedTemplateResolution.getResourceName(),
+                                memoizedTemplateResolution.getCharacterEncoding());
+                if (memoizedTemplateResource != null) {
+                    return new TemplateAndResourceResolution(memoizedTemplateResolution, memoizedTemplateResource);
+                }
+            }
+        }
+        if (memoizedTemplateResolver != null) {
+            this.templateResolversByTemplate.remove(template, memoizedTemplateResolver);
+        }
 
         final Set<ITemplateResolver> templateResolvers = configuration.getTemplateResolvers();
         TemplateResolution templateResolution = null;
         IResource templateResource = null;
+        ITemplateResolver resolvingTemplateResolver = null;
+        // Will only be true if every resolver we asked gave us a cacheable answer (or no answer at all)
+        boolean memoizable = true;
+        // Validities of the resolutions that could not be resolved as resources (all of them if none can, else those
+        // of the resolvers before the one that does), which tell for how long the result of this walk can be memoized
+        final List<ICacheEntryValidity> failedValidities = new ArrayList<ICacheEntryValidity>(2);
 
         for (final ITemplateResolver templateResolver : templateResolvers) {
 
@@ -567,6 +1165,8 @@ private static TemplateAndResourceResolution resolveTemplate(final IEngineConfig
 
             if (templateResolution != null) {
 
+                memoizable &= templateResolution.getValidity().isCacheable();
+
                 final String resourceName = templateResolution.getResourceName();
                 final IResourceResolver resourceResolver = templateResolution.getResourceResolver();
 
@@ -578,6 +1178,7 @@ private static TemplateAndResourceResolution resolveTemplate(final IEngineConfig
                         resourceResolver.resolveResource(configuration, context, resourceName, templateResolution.getCharacterEncoding());
 
                 if (templateResource == null) {
+                    failedValidities.add(templateResolution.getValidity());
                     if (logger.isTraceEnabled()) {
                         logger.trace("[THYMELEAF][{}] Template \"{}\" could not be resolved as resource \"{}\" with resource resolver \"{}\"", new Object[] {TemplateEngine.threadIndex(), template, resourceName, resourceResolver.getName()});
                     }
@@ -585,6 +1186,7 @@ private static TemplateAndResourceResolution resolveTemplate(final IEngineConfig
                     if (logger.isDebugEnabled()) {
                         logger.debug("[THYMELEAF][{}] Template \"{}\" was correctly resolved as resource \"{}\" in mode {} with resource resolver \"{}\"", new Object[] {TemplateEngine.threadIndex(), template, resourceName, templateResolution.getTemplateMode(), resourceResolver.getName()});
                     }
+                    resolvingTemplateResolver = templateResolver;
                     break;
                 }
 
@@ -599,12 +1201,24 @@ private static TemplateAndResourceResolution resolveTemplate(final IEngineConfig
         }
 
         if (templateResolution == null || templateResource == null) {
+            if (memoizable && this.unresolvableTemplates.size() < MAX_UNRESOLVABLE_TEMPLATES) {
+                this.unresolvableTemplates.put(
+                        template, failedValidities.toArray(new ICacheEntryValidity[failedValidities.size()]));
+            }
             throw new TemplateInputException(
                     "Error resolving template \"" + template + "\", " +
                     "template might not exist or might not be accessible by " +
                     "any of the configured Template Resolvers");
         }
 
+        if (memoizable && this.templateResolversByTemplate.size() < MAX_MEMOIZED_TEMPLATE_RESOLUTIONS) {
+            this.templateResolversByTemplate.put(
+                    template,
+                    new MemoizedTemplateResolver(
+                            resolvingTemplateResolver,
+                            failedValidities.toArray(new ICacheEntryValidity[failedValidities.size()])));
+        }
+
         return new TemplateAndResourceResolution(templateResolution, templateResource);
 
     }
@@ -612,6 +1226,18 @@ private static TemplateAndResourceResolution resolveTemplate(final IEngineConfig
 
 
 
+    private static boolean areStillValid(final ICacheEntryValidity[] validities) {
+        for (int i = 0; i < validities.length; i++) {
+            if (!validities[i].isCacheStillValid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+
+
     private static TemplateAndResourceResolution resolveTextualTemplate(final IEngineConfiguration configuration, final IContext context, final String template) {
 
 
@@ -662,7 +1288,80 @@ private static TemplateAndResourceResolution resolveTextualTemplate(final IEngin
 
 
 
-    private static void processAsResource(
+    /*
+     * Parses the resolved template into the specified markup, unless an identical parse result (same source, same
+     * configuration) can be loaded from the persistent parsed markup store, if there is one.
+     */
+    private void parseIntoMarkup(
+            final IEngineConfiguration configuration, final TemplateAndResourceResolution resolution,
+            final boolean fragment, final String[] markupSelectors, final String cacheKey,
+            final MarkupBuilderTemplateHandler builderHandler, final Markup markup) {
+
+        final TemplateMode templateMode = resolution.templateResolution.getTemplateMode();
+
+        if (this.parsedMarkupStore == null || !resolution.templateResolution.getValidity().isCacheable()) {
+            processAsResource(configuration, templateMode, fragment, resolution.resource, markupSelectors, builderHandler);
+            return;
+        }
+
+        // We need the whole source in memory in order to compute its checksum
+        final CharArrayResource resource = asCharArrayResource(resolution.resource);
+        // Stored markup depends on the parsing options (and on whether it was built as a complete document, including
+        // its document start/end events, or not), so these are part of the key
+        final String storeKey =
+                (fragment? "fragment:" : (builderHandler.isFragment()? "template:" : "document:")) +
+                (this.minifyHTMLWhitespace? "minified:" : "") + (this.stripHTMLComments? "nocomments:" : "") +
+                cacheKey;
+
+        if (this.parsedMarkupStore.load(
+                configuration, storeKey, resource.getContent(), resource.getOffset(), resource.getLen(),
+                resource.getName(), markup)) {
+            return;
+        }
+
+        processAsResource(configuration, templateMode, fragment, resource, markupSelectors, builderHandler);
+
+        this.parsedMarkupStore.store(
+                configuration, storeKey, resource.getContent(), resource.getOffset(), resource.getLen(), markup);
+
+    }
+
+
+    private static CharArrayResource asCharArrayResource(final IResource resource) {
+
+        if (resource instanceof CharArrayResource) {
+            return (CharArrayResource) resource;
+        }
+        if (resource instanceof StringResource) {
+            return new CharArrayResource(resource.getName(), ((StringResource)resource).getContent().toCharArray());
+        }
+        if (resource instanceof ReaderResource) {
+            final Reader reader = ((ReaderResource)resource).getContent();
+            try {
+                try {
+                    final CharArrayWriter writer = new CharArrayWriter(4096);
+                    final char[] buffer = new char[4096];
+                    int read;
+                    while ((read = reader.read(buffer)) >= 0) {
+                        writer.write(buffer, 0, read);
+                    }
+                    return new CharArrayResource(resource.getName(), writer.toCharArray());
+                } finally {
+                    reader.close();
+                }
+            } catch (final IOException e) {
+                throw new TemplateInputException("Exception reading resource: " + resource.getName(), e);
+            }
+        }
+        throw new IllegalArgumentException(
+                "Cannot read: unrecognized " + IResource.class.getSimpleName() + " implementation: " + resource.getClass().getName());
+
+    }
+
+
+
+
+    private void processAsResource(
             final IEngineConfiguration configuration, final TemplateMode templateMode, final boolean fragment,
             final IResource templateResource, final String[] markupSelectors, final ITemplateHandler templateHandler) {
 
@@ -679,20 +1378,34 @@ private static void processAsResource(
             }
         }
 
+        /*
+         * Markup being built for caching is minified and/or stripped of comments (if configured) before
+         * reaching the builder
+         */
+        ITemplateHandler handler = templateHandler;
+        if (templateMode.isHTML() && templateHandler instanceof MarkupBuilderTemplateHandler) {
+            if (this.minifyHTMLWhitespace) {
+                handler = new WhitespaceMinifyingTemplateHandler((MarkupBuilderTemplateHandler) templateHandler);
+            }
+            if (this.stripHTMLComments) {
+                handler = new CommentStrippingTemplateHandler(handler);
+            }
+        }
+
         /*
          * Handler chain is in place - now we must use it for calling the parser and initiate the processing
          */
         if (templateMode.isHTML()) {
             if (fragment) {
-                htmlParser.parseFragment(configuration, templateMode, templateResource, markupSelectors, templateHandler);
+                this.htmlParser.parseFragment(configuration, templateMode, templateResource, markupSelectors, handler);
             } else {
-                htmlParser.parseTemplate(configuration, templateMode, templateResource, markupSelectors, templateHandler);
+                this.htmlParser.parseTemplate(configuration, templateMode, templateResource, markupSelectors, handler);
             }
         } else if (templateMode.isXML()) {
             if (fragment) {
-                xmlParser.parseFragment(configuration, templateMode, templateResource, markupSelectors, templateHandler);
+                this.xmlParser.parseFragment(configuration, templateMode, templateResource, markupSelectors, handler);
             } else {
-                xmlParser.parseTemplate(configuration, templateMode, templateResource, markupSelectors, templateHandler);
+                this.xmlParser.parseTemplate(configuration, templateMode, templateResource, markupSelectors, handler);
             }
         } else {
             throw new IllegalArgumentException(
@@ -856,6 +1569,53 @@ private static String computeCacheKey(
     }
 
 
+    /*
+     * Values of key variables are only used if their string form is known to identify them (see
+     * isOutputCacheKeyValue). If any of them has a different kind of value, null is returned and the output
+     * will not be cached, as relying on arbitrary toString() implementations could make different values share
+     * the same key (and therefore the same output).
+     */
+    private String computeOutputCacheKey(
+            final IContext context, final String template, final String[] markupSelectors) {
+
+        final StringBuilder strBuilder = new StringBuilder(template.length() + 50);
+        strBuilder.append(template);
+        strBuilder.append("::");
+        if (markupSelectors != null && markupSelectors.length > 0) {
+            strBuilder.append(computeMarkupSelectorsKeyFragment(markupSelectors));
+        }
+        strBuilder.append("::");
+        strBuilder.append(context.getLocale());
+        for (final String variableName : this.templateOutputCacheKeyVariableNames) {
+            final Object value = context.getVariable(variableName);
+            if (!isOutputCacheKeyValue(value)) {
+                return null;
+            }
+            strBuilder.append("::");
+            strBuilder.append(variableName);
+            if (value != null) {
+                // Values are prefixed by their type and length, so that they cannot be mistaken for one another
+                final String valueStr = value.toString();
+                strBuilder.append('=');
+                strBuilder.append(value.getClass().getName());
+                strBuilder.append(':');
+                strBuilder.append(valueStr.length());
+                strBuilder.append(':');
+                strBuilder.append(valueStr);
+            }
+        }
+        return strBuilder.toString();
+
+    }
+
+
+    private static boolean isOutputCacheKeyValue(final Object value) {
+        return value == null ||
+                value instanceof String || value instanceof Number || value instanceof Boolean ||
+                value instanceof Character || value instanceof Enum<?> || value instanceof Locale;
+    }
+
+
     private static String computeMarkupSelectorsKeyFragment(final String[] markupSelectors) {
 
         if (markupSelectors.length == 1) {
@@ -878,6 +1638,22 @@ private static String computeMarkupSelectorsKeyFragment(final String[] markupSel
 
 
 
+    private static final class MemoizedTemplateResolver {
+
+        final ITemplateResolver templateResolver;
+        final ICacheEntryValidity[] failedValidities;
+
+        MemoizedTemplateResolver(final ITemplateResolver templateResolver, final ICacheEntryValidity[] failedValidities) {
+            super();
+            this.templateResolver = templateResolver;
+            this.failedValidities = failedValidities;
+        }
+
+    }
+
+
+
+
     private static final class TemplateAndResourceResolution {
 
         final TemplateResolution templateResolution;
@@ -0,0 +1,107 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.io.File;
+
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.util.Validate;
+
+
+/**
+ * <p>
+ *   Holder of the settings that affect how a {@link TemplateManager} reads (and stores) parsed templates:
+ *   parser buffer pooling, persistence of parsed templates across restarts and optional transformations
+ *   applied to HTML markup at parse time.
+ * </p>
+ * <p>
+ *   Values are copied by the {@link TemplateManager} when it is created, so modifying an object of this class
+ *   afterwards has no effect on it.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class TemplateManagerConfiguration {
+
+    private File parsedTemplateCacheDirectory = null;
+    private int parserBufferPoolSize = TemplateEngine.DEFAULT_PARSER_BUFFER_POOL_SIZE;
+    private int parserBufferSize = TemplateEngine.DEFAULT_PARSER_BUFFER_SIZE;
+    private boolean minifyHTMLWhitespace = TemplateEngine.DEFAULT_MINIFY_HTML_WHITESPACE;
+    private boolean stripHTMLComments = TemplateEngine.DEFAULT_STRIP_HTML_COMMENTS;
+
+
+
+    public TemplateManagerConfiguration() {
+        super();
+    }
+
+
+
+    public File getParsedTemplateCacheDirectory() {
+        return this.parsedTemplateCacheDirectory;
+    }
+
+    public void setParsedTemplateCacheDirectory(final File parsedTemplateCacheDirectory) {
+        // Directory CAN be null (= parsed templates are not persisted)
+        this.parsedTemplateCacheDirectory = parsedTemplateCacheDirectory;
+    }
+
+
+    public int getParserBufferPoolSize() {
+        return this.parserBufferPoolSize;
+    }
+
+    public void setParserBufferPoolSize(final int parserBufferPoolSize) {
+        Validate.isTrue(parserBufferPoolSize >= 0, "Parser buffer pool size cannot be negative");
+        this.parserBufferPoolSize = parserBufferPoolSize;
+    }
+
+
+    public int getParserBufferSize() {
+        return this.parserBufferSize;
+    }
+
+    public void setParserBufferSize(final int parserBufferSize) {
+        Validate.isTrue(parserBufferSize > 0, "Parser buffer size must be greater than zero");
+        this.parserBufferSize = parserBufferSize;
+    }
+
+
+    public boolean getMinifyHTMLWhitespace() {
+        return this.minifyHTMLWhitespace;
+    }
+
+    public void setMinifyHTMLWhitespace(final boolean minifyHTMLWhitespace) {
+        this.minifyHTMLWhitespace = minifyHTMLWhitespace;
+    }
+
+
+    public boolean getStripHTMLComments() {
+        return this.stripHTMLComments;
+    }
+
+    public void setStripHTMLComments(final boolean stripHTMLComments) {
+        this.stripHTMLComments = stripHTMLComments;
+    }
+
+
+}
@@ -0,0 +1,132 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Handle on the (background) warm-up of a set of templates, started by means of
+ *   {@link TemplateManager#warmUp(org.thymeleaf.IEngineConfiguration, java.util.Collection, int)}.
+ * </p>
+ * <p>
+ *   Allows monitoring the progress of the warm-up and waiting for it to finish (e.g. from a readiness probe).
+ * </p>
+ * <p>
+ *   Objects of this class are <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class TemplateWarmUp {
+
+    private final int total;
+    private final AtomicInteger completed;
+    private final ConcurrentHashMap<String,Throwable> failures;
+    private final CountDownLatch latch;
+
+
+
+    TemplateWarmUp(final int total) {
+        super();
+        this.total = total;
+        this.completed = new AtomicInteger(0);
+        this.failures = new ConcurrentHashMap<String, Throwable>(4);
+        this.latch = new CountDownLatch(total);
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the number of templates to be warmed up.
+     * </p>
+     *
+     * @return the total number of templates.
+     */
+    public int getTotal() {
+        return this.total;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the number of templates already processed, either successfully or not.
+     * </p>
+     *
+     * @return the number of templates processed.
+     */
+    public int getCompleted() {
+        return this.completed.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the templates that could not be warmed up, along with the exception raised for each of them.
+     * </p>
+     *
+     * @return the failed templates.
+     */
+    public Map<String,Throwable> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Throwable>(this.failures));
+    }
+
+
+    public boolean isDone() {
+        return this.latch.getCount() == 0L;
+    }
+
+
+    public void await() throws InterruptedException {
+        this.latch.await();
+    }
+
+
+    public boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.latch.await(timeout, unit);
+    }
+
+
+
+
+    void templateWarmedUp() {
+        this.completed.incrementAndGet();
+        this.latch.countDown();
+    }
+
+
+    void templateFailed(final String template, final Throwable t) {
+        this.failures.put(template, t);
+        this.completed.incrementAndGet();
+        this.latch.countDown();
+    }
+
+
+}
@@ -40,6 +40,9 @@
 
     private char[] buffer;
     private int offset;
+    // True if the buffer is an immutable one, either owned by this event or shared among all the (cached) events
+    // of a template, and therefore can be safely referenced from clones
+    private boolean bufferShared = false;
 
     private String text;
 
@@ -155,6 +158,7 @@ void reset(final char[] buffer,
 
         this.buffer = buffer;
         this.offset = offset;
+        this.bufferShared = false;
 
         this.length = len;
 
@@ -183,6 +187,7 @@ public void setText(final String text) {
 
         this.buffer = null;
         this.offset = -1;
+        this.bufferShared = false;
 
         this.whitespace = null;
 
@@ -242,13 +247,51 @@ public Text cloneNode() {
     }
 
 
+    // Meant to be called only from within the engine, when compacting cached markup: copies the contents of this
+    // text into the (immutable, shared) buffer at the specified offset, and makes this text a view on it
+    int compactInto(final char[] sharedBuffer, final int sharedOffset) {
+
+        if (this.buffer != null) {
+            System.arraycopy(this.buffer, this.offset, sharedBuffer, sharedOffset, this.length);
+        } else {
+            this.text.getChars(0, this.length, sharedBuffer, sharedOffset);
+        }
+
+        this.buffer = sharedBuffer;
+        this.offset = sharedOffset;
+        this.bufferShared = true;
+        this.text = null;
+
+        return sharedOffset + this.length;
+
+    }
+
+
     // Meant to be called only from within the engine
     void resetAsCloneOf(final Text original) {
 
-        this.buffer = null;
-        this.offset = -1;
-        this.text = original.getText(); // Need to call the method in order to force computing -- no buffer cloning!
-        this.length = this.text.length();
+        if (original.bufferShared) {
+            // Shared buffers are immutable, so they can be safely referenced (and no String needs to be created)
+            this.buffer = original.buffer;
+            this.offset = original.offset;
+            this.bufferShared = true;
+            this.text = original.text;
+        } else if (original.text != null) {
+            this.buffer = null;
+            this.offset = -1;
+            this.bufferShared = false;
+            this.text = original.text;
+        } else {
+            // The original buffer is not ours to keep (it will normally be a parser buffer), so we copy the
+            // contents into a buffer of our own. This avoids creating (and looking up in the text repository) a
+            // String for every text event in a template being cached, most of which will never be needed.
+            this.buffer = new char[original.length];
+            System.arraycopy(original.buffer, original.offset, this.buffer, 0, original.length);
+            this.offset = 0;
+            this.bufferShared = true;
+            this.text = null;
+        }
+        this.length = original.length;
         this.whitespace = original.whitespace;
         this.templateName = original.templateName;
         this.line = original.line;
@@ -0,0 +1,180 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.engine;
+
+import org.thymeleaf.model.IAutoCloseElementTag;
+import org.thymeleaf.model.IAutoOpenElementTag;
+import org.thymeleaf.model.ICloseElementTag;
+import org.thymeleaf.model.IElementTag;
+import org.thymeleaf.model.IOpenElementTag;
+import org.thymeleaf.model.IText;
+
+/**
+ * <p>
+ *   Template handler meant to be placed in front of a {@link MarkupBuilderTemplateHandler} when parsing
+ *   HTML templates, collapsing each sequence of whitespace in texts into a single whitespace character (a
+ *   newline if the sequence contained one, a space if not) so that the markup that gets cached (and
+ *   therefore output at every execution) is smaller.
+ * </p>
+ * <p>
+ *   This is equivalent to how browsers render whitespace in normal flow, but it is not applied:
+ * </p>
+ * <ul>
+ *   <li>Inside elements in which whitespace is significant: <tt>&lt;pre&gt;</tt> and the raw text
+ *       elements (<tt>&lt;script&gt;</tt>, <tt>&lt;style&gt;</tt>, <tt>&lt;textarea&gt;</tt>,
+ *       <tt>&lt;title&gt;</tt>).</li>
+ *   <li>To texts containing inlined expressions (<tt>[[...]]</tt> or <tt>[(...)]</tt>), as these could
+ *       contain literals.</li>
+ * </ul>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+final class WhitespaceMinifyingTemplateHandler extends AbstractTemplateHandler {
+
+    private static final String PRE_ELEMENT_NAME = "pre";
+
+    // Number of currently open elements inside which whitespace has to be preserved
+    private int preservingDepth = 0;
+
+    // Reused for every minified text, as the builder handler will clone it anyway
+    private final Text minifiedText;
+    private char[] minifiedBuffer = new char[256];
+
+
+
+    WhitespaceMinifyingTemplateHandler(final MarkupBuilderTemplateHandler builderHandler) {
+        super(builderHandler);
+        this.minifiedText = new Text(builderHandler.getMarkup().getConfiguration().getTextRepository());
+    }
+
+
+
+
+    @Override
+    public void handleText(final IText text) {
+
+        if (this.preservingDepth > 0 || !(text instanceof Text)) {
+            super.handleText(text);
+            return;
+        }
+
+        final Text engineText = (Text) text;
+        final int len = engineText.length();
+
+        if (len > this.minifiedBuffer.length) {
+            this.minifiedBuffer = new char[len];
+        }
+        final char[] buffer = this.minifiedBuffer;
+
+        int minifiedLen = 0;
+        boolean inWhitespace = false;
+        boolean changed = false;
+        for (int i = 0; i < len; i++) {
+            final char c = engineText.charAt(i);
+            if (c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f') {
+                if (!inWhitespace) {
+                    buffer[minifiedLen++] = c;
+                    inWhitespace = true;
+                    continue;
+                }
+                changed = true;
+                if (c == '\n') {
+                    buffer[minifiedLen - 1] = '\n';
+                }
+            } else {
+                if ((c == '[' || c == '(') && i > 0 && engineText.charAt(i - 1) == '[') {
+                    // Inlined expression: leave the whole text alone
+                    super.handleText(text);
+                    return;
+                }
+                inWhitespace = false;
+                buffer[minifiedLen++] = c;
+            }
+        }
+
+        if (!changed) {
+            super.handleText(text);
+            return;
+        }
+
+        this.minifiedText.reset(
+                buffer, 0, minifiedLen, engineText.getTemplateName(), engineText.getLine(), engineText.getCol());
+        super.handleText(this.minifiedText);
+
+    }
+
+
+
+
+    @Override
+    public void handleOpenElement(final IOpenElementTag openElementTag) {
+        if (isPreserving(openElementTag)) {
+            this.preservingDepth++;
+        }
+        super.handleOpenElement(openElementTag);
+    }
+
+
+    @Override
+    public void handleAutoOpenElement(final IAutoOpenElementTag autoOpenElementTag) {
+        if (isPreserving(autoOpenElementTag)) {
+            this.preservingDepth++;
+        }
+        super.handleAutoOpenElement(autoOpenElementTag);
+    }
+
+
+    @Override
+    public void handleCloseElement(final ICloseElementTag closeElementTag) {
+        if (this.preservingDepth > 0 && isPreserving(closeElementTag)) {
+            this.preservingDepth--;
+        }
+        super.handleCloseElement(closeElementTag);
+    }
+
+
+    @Override
+    public void handleAutoCloseElement(final IAutoCloseElementTag autoCloseElementTag) {
+        if (this.preservingDepth > 0 && isPreserving(autoCloseElementTag)) {
+            this.preservingDepth--;
+        }
+        super.handleAutoCloseElement(autoCloseElementTag);
+    }
+
+
+
+
+    private static boolean isPreserving(final IElementTag elementTag) {
+        final ElementDefinition elementDefinition = elementTag.getElementDefinition();
+        if (!(elementDefinition instanceof HTMLElementDefinition)) {
+            return false;
+        }
+        final HTMLElementType type = ((HTMLElementDefinition) elementDefinition).getType();
+        if (type == HTMLElementType.RAW_TEXT || type == HTMLElementType.ESCAPABLE_RAW_TEXT) {
+            return true;
+        }
+        final ElementName elementName = elementDefinition.getElementName();
+        return !elementName.isPrefixed() && PRE_ELEMENT_NAME.equals(elementName.getElementName());
+    }
+
+
+}
@@ -0,0 +1,110 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.resourceresolver;
+
+import java.nio.charset.Charset;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.thymeleaf.IEngineConfiguration;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.IContext;
+import org.thymeleaf.resource.CharArrayResource;
+import org.thymeleaf.resource.IResource;
+import org.thymeleaf.util.StringUtils;
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Implementation of {@link IResourceResolver} that resolves
+ *   resources from a prebuilt, memory-mapped {@link TemplateBundle}.
+ * </p>
+ * <p>
+ *   Resolution only requires an in-memory index lookup, without any class loader or
+ *   file system access. The result will be encapsulated into a {@link CharArrayResource}.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public final class BundleResourceResolver
+        implements IResourceResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(BundleResourceResolver.class);
+
+    public static final String NAME = "BUNDLE";
+
+
+    private final TemplateBundle bundle;
+
+
+    public BundleResourceResolver(final TemplateBundle bundle) {
+        super();
+        Validate.notNull(bundle, "Template bundle cannot be null");
+        this.bundle = bundle;
+    }
+
+
+    public String getName() {
+        return NAME;
+    }
+
+
+    public TemplateBundle getBundle() {
+        return this.bundle;
+    }
+
+
+    public IResource resolveResource(
+            final IEngineConfiguration configuration, final IContext context,
+            final String resource, final String characterEncoding) {
+
+        Validate.notNull(resource, "Resource cannot be null");
+
+        try {
+
+            final Charset charset =
+                    (!StringUtils.isEmptyOrWhitespace(characterEncoding)?
+                            Charset.forName(characterEncoding) : Charset.defaultCharset());
+
+            final char[] content = this.bundle.getResourceContent(resource, charset);
+            if (content == null) {
+                return null;
+            }
+
+            return new CharArrayResource(resource, content);
+
+        } catch (final Throwable t) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(
+                        String.format(
+                                "[THYMELEAF][%s] Resource \"%s\" could not be resolved from bundle \"%s\": %s: %s",
+                                TemplateEngine.threadIndex(), resource, this.bundle.getName(),
+                                t.getClass().getName(), t.getMessage()),
+                        t);
+            }
+            return null;
+        }
+
+    }
+
+}
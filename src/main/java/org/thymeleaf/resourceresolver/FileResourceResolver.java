@@ -21,16 +21,21 @@
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.thymeleaf.IEngineConfiguration;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.IContext;
+import org.thymeleaf.resource.CharArrayResource;
 import org.thymeleaf.resource.IResource;
-import org.thymeleaf.resource.ReaderResource;
 import org.thymeleaf.util.StringUtils;
 import org.thymeleaf.util.Validate;
 
@@ -48,8 +53,8 @@
  *      }
  *   </tt></pre>
  *  <p>
- *    (Note that a {@link java.io.Reader} will be created on top of the
- *    input stream, and the result will be encapsulated into a {@link ReaderResource}.
+ *    (Note that the whole file will be read at once by means of its {@link FileChannel} and decoded
+ *    into a <tt>char[]</tt>, and the result will be encapsulated into a {@link CharArrayResource}).
  *  </p>
  *
  * @author Daniel Fern&aacute;ndez
@@ -88,16 +93,11 @@ public IResource resolveResource(
                 return null;
             }
 
-            final InputStream inputStream = new FileInputStream(resourceFile);
+            final Charset charset =
+                    (!StringUtils.isEmptyOrWhitespace(characterEncoding)?
+                            Charset.forName(characterEncoding) : Charset.defaultCharset());
 
-            final InputStreamReader reader;
-            if (!StringUtils.isEmptyOrWhitespace(characterEncoding)) {
-                reader = new InputStreamReader(inputStream, characterEncoding);
-            } else {
-                reader = new InputStreamReader(inputStream);
-            }
-
-            return new ReaderResource(resource, reader);
+            return new CharArrayResource(resource, readFile(resourceFile, charset));
 
         } catch (final Throwable t) {
             showException(resource, t);
@@ -109,6 +109,82 @@ public IResource resolveResource(
 
 
 
+    private static char[] readFile(final File file, final Charset charset) throws IOException {
+
+        final FileInputStream inputStream = new FileInputStream(file);
+        try {
+
+            final FileChannel channel = inputStream.getChannel();
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File \"" + file.getPath() + "\" is too big to be read as a resource");
+            }
+
+            // A single read will normally be enough, but the channel does not guarantee it
+            final ByteBuffer byteBuffer = ByteBuffer.allocate((int) size);
+            while (byteBuffer.hasRemaining() && channel.read(byteBuffer) >= 0) {
+                // Nothing to do here, just keep on reading
+            }
+            byteBuffer.flip();
+
+            return decode(byteBuffer, charset);
+
+        } finally {
+            inputStream.close();
+        }
+
+    }
+
+
+    private static char[] decode(final ByteBuffer byteBuffer, final Charset charset) throws CharacterCodingException {
+
+        final byte[] bytes = byteBuffer.array();
+        final int len = byteBuffer.limit();
+
+        /*
+         * Fast path: for ASCII-compatible encodings, the (typically very long) ASCII-only prefix of the file can be
+         * directly copied, byte by byte, without going through the charset decoder.
+         */
+        int asciiLen = 0;
+        char[] asciiChars = null;
+        if (isASCIICompatible(charset)) {
+            asciiChars = new char[len];
+            while (asciiLen < len && bytes[asciiLen] >= 0) {
+                asciiChars[asciiLen] = (char) bytes[asciiLen];
+                asciiLen++;
+            }
+            if (asciiLen == len) {
+                return asciiChars;
+            }
+        }
+
+        // Same behaviour as InputStreamReader when finding malformed or unmappable input
+        byteBuffer.position(asciiLen);
+        final CharBuffer charBuffer =
+                charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(byteBuffer);
+
+        final char[] chars = new char[asciiLen + charBuffer.remaining()];
+        if (asciiLen > 0) {
+            System.arraycopy(asciiChars, 0, chars, 0, asciiLen);
+        }
+        charBuffer.get(chars, asciiLen, charBuffer.remaining());
+        return chars;
+
+    }
+
+
+    private static boolean isASCIICompatible(final Charset charset) {
+        final String charsetName = charset.name();
+        return "UTF-8".equals(charsetName) || "US-ASCII".equals(charsetName) ||
+                "ISO-8859-1".equals(charsetName) || "windows-1252".equals(charsetName);
+    }
+
+
+
+
     private static void showException(final String resourceName, final Throwable t) {
         if (logger.isDebugEnabled()) {
             if (logger.isTraceEnabled()) {
@@ -0,0 +1,304 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.resourceresolver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.thymeleaf.util.Validate;
+
+/**
+ * <p>
+ *   Read-only, indexed archive of template sources, contained in a single file that is memory-mapped
+ *   when the bundle is opened. Used by {@link BundleResourceResolver}.
+ * </p>
+ * <p>
+ *   The bundle file is composed of a header containing an index of entries (name, offset and length) followed
+ *   by the raw (not decoded) bytes of each of the bundled resources. Resolving a resource from the bundle is
+ *   therefore just an in-memory index lookup followed by the decoding of the corresponding bytes.
+ * </p>
+ * <p>
+ *   Bundles are created by means of the {@link #build(File, File)} method, which can also be executed at
+ *   build time as a command-line tool:
+ * </p>
+ * <pre><code>
+ *   java org.thymeleaf.resourceresolver.TemplateBundle &lt;source-directory&gt; &lt;bundle-file&gt;
+ * </code></pre>
+ * <p>
+ *   Entry names are the paths of the bundled files relative to the source directory, using <tt>/</tt>
+ *   as separator.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class TemplateBundle {
+
+    private static final int MAGIC = 0x54484231; // "THB1"
+    private static final Charset NAME_CHARSET = Charset.forName("UTF-8");
+
+
+    private final String name;
+    private final ByteBuffer data;
+    private final Map<String,int[]> index;
+
+
+
+
+    /**
+     * <p>
+     *   Opens (and memory-maps) the specified bundle file.
+     * </p>
+     *
+     * @param bundleFile the bundle file, as created by {@link #build(File, File)}.
+     * @return the opened bundle.
+     * @throws IOException if the bundle file cannot be read or is not a valid bundle.
+     */
+    public static TemplateBundle open(final File bundleFile) throws IOException {
+
+        Validate.notNull(bundleFile, "Bundle file cannot be null");
+
+        final FileInputStream inputStream = new FileInputStream(bundleFile);
+        try {
+
+            final FileChannel channel = inputStream.getChannel();
+            // A mapped buffer remains valid after the channel is closed
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("File \"" + bundleFile.getPath() + "\" is not a valid template bundle");
+            }
+
+            final int entryCount = buffer.getInt();
+            final Map<String,int[]> index = new HashMap<String, int[]>(entryCount * 2 + 1, 1.0f);
+            for (int i = 0; i < entryCount; i++) {
+                final byte[] nameBytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(nameBytes);
+                final int offset = buffer.getInt();
+                final int len = buffer.getInt();
+                index.put(new String(nameBytes, NAME_CHARSET.name()), new int[] { offset, len });
+            }
+
+            // Offsets in the index are relative to the start of the data section, i.e. the end of the header
+            return new TemplateBundle(bundleFile.getPath(), buffer.slice(), index);
+
+        } finally {
+            inputStream.close();
+        }
+
+    }
+
+
+
+
+    private TemplateBundle(final String name, final ByteBuffer data, final Map<String,int[]> index) {
+        super();
+        this.name = name;
+        this.data = data;
+        this.index = index;
+    }
+
+
+
+
+    public String getName() {
+        return this.name;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the names of all the resources contained in this bundle. Useful for warming caches up.
+     * </p>
+     *
+     * @return the names of the bundled resources.
+     */
+    public Set<String> getResourceNames() {
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+
+    public boolean containsResource(final String resourceName) {
+        return this.index.containsKey(resourceName);
+    }
+
+
+    /**
+     * <p>
+     *   Decodes and returns the contents of a bundled resource, or <tt>null</tt> if the bundle
+     *   does not contain a resource with the specified name.
+     * </p>
+     *
+     * @param resourceName the name of the resource.
+     * @param charset the charset to be used for decoding the resource bytes.
+     * @return the decoded contents of the resource, or null if not found.
+     * @throws CharacterCodingException if the resource cannot be decoded.
+     */
+    public char[] getResourceContent(final String resourceName, final Charset charset)
+            throws CharacterCodingException {
+
+        final int[] entry = this.index.get(resourceName);
+        if (entry == null) {
+            return null;
+        }
+
+        // Buffer position and limit are not thread-safe, so we work on a duplicate (which shares the contents)
+        final ByteBuffer entryBuffer = this.data.duplicate();
+        entryBuffer.position(entry[0]);
+        entryBuffer.limit(entry[0] + entry[1]);
+
+        // Same behaviour as InputStreamReader when finding malformed or unmappable input
+        final CharBuffer charBuffer =
+                charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                        .decode(entryBuffer);
+
+        final char[] chars = new char[charBuffer.remaining()];
+        charBuffer.get(chars);
+        return chars;
+
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Creates a bundle file containing all the files living in the specified source directory
+     *   (and its subdirectories).
+     * </p>
+     *
+     * @param sourceDirectory the directory containing the resources to be bundled.
+     * @param bundleFile the bundle file to be created (will be overwritten if it exists).
+     * @throws IOException if the source files cannot be read or the bundle file cannot be written.
+     */
+    public static void build(final File sourceDirectory, final File bundleFile) throws IOException {
+
+        Validate.notNull(sourceDirectory, "Source directory cannot be null");
+        Validate.notNull(bundleFile, "Bundle file cannot be null");
+        if (!sourceDirectory.isDirectory()) {
+            throw new IOException("\"" + sourceDirectory.getPath() + "\" is not a directory");
+        }
+
+        final Map<String,File> files = new LinkedHashMap<String, File>();
+        collectFiles(sourceDirectory, "", files);
+
+        final List<byte[]> nameBytes = new ArrayList<byte[]>(files.size());
+        int headerLen = 8;
+        for (final String fileName : files.keySet()) {
+            final byte[] bytes = fileName.getBytes(NAME_CHARSET.name());
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("Resource name is too long: \"" + fileName + "\"");
+            }
+            nameBytes.add(bytes);
+            headerLen += 2 + bytes.length + 8;
+        }
+
+        final ByteBuffer header = ByteBuffer.allocate(headerLen);
+        header.putInt(MAGIC);
+        header.putInt(files.size());
+        int offset = 0;
+        int i = 0;
+        for (final File file : files.values()) {
+            final long fileLen = file.length();
+            if (offset + fileLen > Integer.MAX_VALUE) {
+                throw new IOException("Template bundle would be too big");
+            }
+            final byte[] bytes = nameBytes.get(i++);
+            header.putShort((short) bytes.length);
+            header.put(bytes);
+            header.putInt(offset);
+            header.putInt((int) fileLen);
+            offset += (int) fileLen;
+        }
+
+        final OutputStream outputStream = new FileOutputStream(bundleFile);
+        try {
+            outputStream.write(header.array());
+            final byte[] buffer = new byte[8192];
+            for (final File file : files.values()) {
+                final FileInputStream inputStream = new FileInputStream(file);
+                try {
+                    int read;
+                    while ((read = inputStream.read(buffer)) >= 0) {
+                        outputStream.write(buffer, 0, read);
+                    }
+                } finally {
+                    inputStream.close();
+                }
+            }
+        } finally {
+            outputStream.close();
+        }
+
+    }
+
+
+    private static void collectFiles(final File directory, final String pathPrefix, final Map<String,File> files) {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        // Sorted so that the generated bundle does not depend on the order in which the file system lists files
+        Arrays.sort(children);
+        for (final File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, pathPrefix + child.getName() + "/", files);
+            } else {
+                files.put(pathPrefix + child.getName(), child);
+            }
+        }
+    }
+
+
+
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java " + TemplateBundle.class.getName() + " <source-directory> <bundle-file>");
+            System.exit(1);
+        }
+        build(new File(args[0]), new File(args[1]));
+    }
+
+
+}
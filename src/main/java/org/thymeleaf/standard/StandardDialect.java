@@ -44,6 +44,7 @@
 import org.thymeleaf.standard.processor.StandardAttrappendTagProcessor;
 import org.thymeleaf.standard.processor.StandardAttrprependTagProcessor;
 import org.thymeleaf.standard.processor.StandardBlockTagProcessor;
+import org.thymeleaf.standard.processor.StandardCacheTagProcessor;
 import org.thymeleaf.standard.processor.StandardCaseTagProcessor;
 import org.thymeleaf.standard.processor.StandardClassappendTagProcessor;
 import org.thymeleaf.standard.processor.StandardConditionalCommentProcessor;
@@ -331,6 +332,7 @@ public static Set<IProcessor> createStandardProcessorsSet(final String dialectPr
         processors.add(new StandardAttrTagProcessor(TemplateMode.HTML, dialectPrefix));
         processors.add(new StandardAttrappendTagProcessor(TemplateMode.HTML, dialectPrefix));
         processors.add(new StandardAttrprependTagProcessor(TemplateMode.HTML, dialectPrefix));
+        processors.add(new StandardCacheTagProcessor(TemplateMode.HTML, dialectPrefix));
         processors.add(new StandardCaseTagProcessor(TemplateMode.HTML, dialectPrefix));
         processors.add(new StandardClassappendTagProcessor(dialectPrefix));
         for (final String attrName : StandardConditionalFixedValueTagProcessor.ATTR_NAMES) {
@@ -407,6 +409,7 @@ public static Set<IProcessor> createStandardProcessorsSet(final String dialectPr
         processors.add(new StandardAttrTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardAttrappendTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardAttrprependTagProcessor(TemplateMode.XML, dialectPrefix));
+        processors.add(new StandardCacheTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardCaseTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardEachTagProcessor(TemplateMode.XML, dialectPrefix));
         processors.add(new StandardFragmentTagProcessor(TemplateMode.XML, dialectPrefix));
@@ -0,0 +1,85 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.standard.processor;
+
+import org.thymeleaf.context.ITemplateProcessingContext;
+import org.thymeleaf.engine.AttributeName;
+import org.thymeleaf.engine.IElementStructureHandler;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.templatemode.TemplateMode;
+
+/**
+ * <p>
+ *   Marks the element as cacheable in the fragment output cache: its whole rendered output (tag and body) will be
+ *   stored the first time it is processed, and reused from then on (while it remains valid in the cache) without
+ *   executing it again.
+ * </p>
+ * <p>
+ *   The result of the expression is used as a part of the cache key (along with the template name and the locale),
+ *   so it should reflect any data the output of the element depends on. An empty result disables caching.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public final class StandardCacheTagProcessor extends AbstractStandardExpressionAttributeTagProcessor {
+
+    public static final int PRECEDENCE = 650;
+    public static final String ATTR_NAME = "cache";
+
+
+    public StandardCacheTagProcessor(final TemplateMode templateMode, final String dialectPrefix) {
+        super(templateMode, dialectPrefix, ATTR_NAME, PRECEDENCE);
+    }
+
+
+
+    @Override
+    protected void doProcess(
+            final ITemplateProcessingContext processingContext,
+            final IProcessableElementTag tag,
+            final AttributeName attributeName, final String attributeValue, final Object expressionResult,
+            final IElementStructureHandler structureHandler) {
+
+        tag.getAttributes().removeAttribute(attributeName);
+
+        final String keyValue = (expressionResult == null ? null : expressionResult.toString());
+        if (keyValue == null || keyValue.length() == 0) {
+            return;
+        }
+
+        final String templateName =
+                (tag.getTemplateName() != null? tag.getTemplateName() : processingContext.getTemplateResolution().getTemplateName());
+
+        final StringBuilder cacheKey = new StringBuilder(keyValue.length() + 50);
+        cacheKey.append(templateName);
+        cacheKey.append("::");
+        cacheKey.append(keyValue);
+        cacheKey.append("::");
+        cacheKey.append(processingContext.getLocale());
+
+        structureHandler.cacheElementOutput(cacheKey.toString());
+
+    }
+
+
+}
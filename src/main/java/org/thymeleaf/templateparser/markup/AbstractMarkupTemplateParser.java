@@ -46,6 +46,8 @@
 import org.thymeleaf.resource.StringResource;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateparser.ITemplateParser;
+import org.thymeleaf.util.ResourcePool;
+import org.thymeleaf.util.StripedResourcePool;
 import org.thymeleaf.util.Validate;
 
 /**
@@ -57,7 +59,12 @@
 public abstract class AbstractMarkupTemplateParser implements ITemplateParser {
 
 
-    private final IMarkupParser parser;
+    /*
+     * Each pooled parser owns exactly one buffer, so that the parser's own (synchronized) buffer pool is
+     * only ever used by one thread at a time. Pooling the parsers themselves (without locks, never blocking)
+     * means concurrent parsing does not serialize on any shared monitor.
+     */
+    private final StripedResourcePool<IMarkupParser> parserPool;
     private final boolean html;
 
 
@@ -65,13 +72,47 @@ public abstract class AbstractMarkupTemplateParser implements ITemplateParser {
     protected AbstractMarkupTemplateParser(final ParseConfiguration parseConfiguration, final int bufferPoolSize, final int bufferSize) {
         super();
         Validate.notNull(parseConfiguration, "Parse configuration cannot be null");
-        this.parser = new MarkupParser(parseConfiguration, bufferPoolSize, bufferSize);
+        Validate.isTrue(bufferPoolSize >= 0, "Buffer pool size must be >= 0");
+        Validate.isTrue(bufferSize > 0, "Buffer size must be > 0");
+        this.parserPool = new StripedResourcePool<IMarkupParser>(
+                new ResourcePool.IResourceFactory<IMarkupParser>() {
+                    public IMarkupParser createResource() {
+                        return new MarkupParser(parseConfiguration, 1, bufferSize);
+                    }
+                }, bufferPoolSize);
         this.html = parseConfiguration.getMode().equals(ParseConfiguration.ParsingMode.HTML);
     }
 
 
 
 
+    /**
+     * <p>
+     *   Returns the amount of parse operations that could reuse a pooled parser (and its buffer).
+     * </p>
+     *
+     * @return the pool hit count.
+     */
+    public final long getBufferPoolHitCount() {
+        return this.parserPool.getHitCount();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the amount of parse operations that needed a new parser (and buffer) to be created because
+     *   all pooled ones were in use.
+     * </p>
+     *
+     * @return the pool miss count.
+     */
+    public final long getBufferPoolMissCount() {
+        return this.parserPool.getMissCount();
+    }
+
+
+
+
     /*
      * -------------------
      * PARSE METHODS
@@ -181,7 +222,12 @@ private void parse(
 
             }
 
-            this.parser.parse(templateReader, handler);
+            final IMarkupParser parser = this.parserPool.allocate();
+            try {
+                parser.parse(templateReader, handler);
+            } finally {
+                this.parserPool.release(parser);
+            }
 
 
         } catch (final ParseException e) {
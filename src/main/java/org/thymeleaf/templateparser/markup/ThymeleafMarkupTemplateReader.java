@@ -98,17 +98,20 @@ public int read(final char[] cbuf, final int off, final int len) throws IOExcept
             int maxi = off + read;
 
             char c;
-            int i = 0;
+            int i = off; // Anything before 'off' has already been returned (and checked) by previous calls
             while (i < maxi) {
 
-                c = cbuf[i++];
-
-                if (this.index == 0 && c != '<' && c != '/' && c != '*') {
-                    // Shortcut for most characters in a template: no further tests to be done if the character coming
-                    // is not one of those that can start a recognizable sequence
-                    continue;
+                if (this.index == 0) {
+                    // Shortcut for most characters in a template: jump directly to the next character that can start
+                    // a recognizable sequence (only prefixes outside comments, only suffixes inside them)
+                    i = (this.insideComment? findNextSuffixStart(cbuf, i, maxi) : findNextPrefixStart(cbuf, i, maxi));
+                    if (i == maxi) {
+                        break;
+                    }
                 }
 
+                c = cbuf[i++];
+
                 if (!this.insideComment && this.discardFrom < 0) {
 
                     if (c == PROTOTYPE_ONLY_COMMENT_PREFIX[this.index]) {
@@ -221,6 +224,33 @@ public int read(final char[] cbuf, final int off, final int len) throws IOExcept
     }
 
 
+    /*
+     * Tight loops for skipping the chars that cannot start a removable sequence, which are the vast majority.
+     */
+    private static int findNextPrefixStart(final char[] buffer, final int offset, final int maxi) {
+        int i = offset;
+        while (i < maxi && buffer[i] != '<') {
+            i++;
+        }
+        return i;
+    }
+
+
+    private static int findNextSuffixStart(final char[] buffer, final int offset, final int maxi) {
+        char c;
+        int i = offset;
+        while (i < maxi) {
+            c = buffer[i];
+            // Both '*' and '/' are lower than most chars in a template, so a single comparison filters out most
+            if (c <= '/' && (c == '/' || c == '*')) {
+                return i;
+            }
+            i++;
+        }
+        return i;
+    }
+
+
     private static boolean isArrayEquals(final char[] target, final char[] array, final int offset, final int len) {
         if (array.length == len && offset == 0) {
             return Arrays.equals(target, array);
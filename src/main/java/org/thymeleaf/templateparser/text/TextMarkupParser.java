@@ -21,12 +21,13 @@
 
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.Arrays;
 
 import org.attoparser.IMarkupHandler;
 import org.attoparser.IMarkupParser;
 import org.attoparser.ParseException;
 import org.attoparser.config.ParseConfiguration;
+import org.thymeleaf.util.ResourcePool;
+import org.thymeleaf.util.StripedResourcePool;
 
 /**
  * <p>
@@ -120,6 +121,18 @@ final class TextMarkupParser implements IMarkupParser {
 
 
 
+    long getBufferPoolHitCount() {
+        return this.pool.pool.getHitCount();
+    }
+
+
+    long getBufferPoolMissCount() {
+        return this.pool.pool.getMissCount();
+    }
+
+
+
+
 
 
     public void parse(final String document, final IMarkupHandler handler)
@@ -503,47 +516,40 @@ private void parseBuffer(
      * This class models a pool of buffers, used to keep the amount of
      * large char[] buffer objects required to operate to a minimum.
      *
-     * Note this pool never blocks, so if a new buffer is needed and all
-     * are currently allocated, a new char[] object is created and returned.
+     * Note this pool never blocks nor locks, so if a new buffer is needed and all
+     * are currently allocated, a new char[] object is created and returned (and kept
+     * in the pool when released, if there is room for it).
      *
      */
     private static final class BufferPool {
 
-        private final char[][] pool;
-        private final boolean[] allocated;
+        private final StripedResourcePool<char[]> pool;
         private final int poolBufferSize;
 
         private BufferPool(final int poolSize, final int poolBufferSize) {
 
             super();
 
-            this.pool = new char[poolSize][];
-            this.allocated = new boolean[poolSize];
             this.poolBufferSize = poolBufferSize;
-
-            for (int i = 0; i < this.pool.length; i++) {
-                this.pool[i] = new char[this.poolBufferSize];
-            }
-            Arrays.fill(this.allocated, false);
+            this.pool = new StripedResourcePool<char[]>(
+                    new ResourcePool.IResourceFactory<char[]>() {
+                        public char[] createResource() {
+                            return new char[poolBufferSize];
+                        }
+                    }, poolSize);
 
         }
 
-        private synchronized char[] allocateBuffer(final int bufferSize) {
+        private char[] allocateBuffer(final int bufferSize) {
             if (bufferSize != this.poolBufferSize) {
                 // We will only pool buffers of the default size. If a different size is required, we just
                 // create it without pooling.
                 return new char[bufferSize];
             }
-            for (int i = 0; i < this.pool.length; i++) {
-                if (!this.allocated[i]) {
-                    this.allocated[i] = true;
-                    return this.pool[i];
-                }
-            }
-            return new char[bufferSize];
+            return this.pool.allocate();
         }
 
-        private synchronized void releaseBuffer(final char[] buffer) {
+        private void releaseBuffer(final char[] buffer) {
             if (buffer == null) {
                 return;
             }
@@ -551,14 +557,7 @@ private synchronized void releaseBuffer(final char[] buffer) {
                 // This buffer cannot be part of the pool - only buffers with a specific size are contained
                 return;
             }
-            for (int i = 0; i < this.pool.length; i++) {
-                if (this.pool[i] == buffer) {
-                    // Found it. Mark it as non-allocated
-                    this.allocated[i] = false;
-                    return;
-                }
-            }
-            // The buffer wasn't part of our pool. Just return.
+            this.pool.release(buffer);
         }
 
 
@@ -0,0 +1,138 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.templateresolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.thymeleaf.exceptions.ConfigurationException;
+import org.thymeleaf.resourceresolver.BundleResourceResolver;
+import org.thymeleaf.resourceresolver.IResourceResolver;
+import org.thymeleaf.resourceresolver.TemplateBundle;
+import org.thymeleaf.util.PatternSpec;
+
+/**
+ * <p>
+ *   Implementation of {@link ITemplateResolver} that extends {@link TemplateResolver}
+ *   and uses a {@link BundleResourceResolver} for resource resolution.
+ * </p>
+ * <p>
+ *   Template names (after applying prefix and suffix) are resolved against the entry names
+ *   of the {@link TemplateBundle}, which are the paths of the bundled files relative to the
+ *   directory the bundle was built from.
+ * </p>
+ * <p>
+ *   As the contents of the bundle are known in advance, this resolver is able to list all the
+ *   templates it can resolve (see {@link IListableTemplateResolver}).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public class BundleTemplateResolver
+        extends TemplateResolver implements IListableTemplateResolver {
+
+
+    private final TemplateBundle bundle;
+
+
+
+
+    public BundleTemplateResolver(final TemplateBundle bundle) {
+        super();
+        this.bundle = bundle;
+        super.setResourceResolver(new BundleResourceResolver(bundle));
+    }
+
+
+    public BundleTemplateResolver(final File bundleFile) {
+        this(openBundle(bundleFile));
+    }
+
+
+    private static TemplateBundle openBundle(final File bundleFile) {
+        try {
+            return TemplateBundle.open(bundleFile);
+        } catch (final IOException e) {
+            throw new ConfigurationException("Cannot open template bundle: " + bundleFile, e);
+        }
+    }
+
+
+
+
+    public final TemplateBundle getBundle() {
+        return this.bundle;
+    }
+
+
+    public Set<String> getTemplateNames() {
+
+        final String prefix = (getPrefix() == null? "" : getPrefix());
+        final String suffix = (getSuffix() == null? "" : getSuffix());
+
+        final PatternSpec resolvablePatternSpec = getResolvablePatternSpec();
+
+        final Set<String> templateNames = new LinkedHashSet<String>();
+        for (final String resourceName : this.bundle.getResourceNames()) {
+            if (resourceName.length() >= prefix.length() + suffix.length() &&
+                    resourceName.startsWith(prefix) && resourceName.endsWith(suffix)) {
+                final String templateName =
+                        resourceName.substring(prefix.length(), resourceName.length() - suffix.length());
+                if (resolvablePatternSpec.isEmpty() || resolvablePatternSpec.matches(templateName)) {
+                    templateNames.add(templateName);
+                }
+            }
+        }
+        return templateNames;
+
+    }
+
+
+
+
+    /**
+     * <p>
+     *   This method <b>should not be called</b>, because the resource resolver is
+     *   fixed to be {@link BundleResourceResolver}. Every execution of this method
+     *   will result in an exception.
+     * </p>
+     * <p>
+     *   If you need to select a different resource resolver, use the {@link TemplateResolver}
+     *   class instead.
+     * </p>
+     *
+     * @param resourceResolver the new resource resolver
+     */
+    @Override
+    public void setResourceResolver(final IResourceResolver resourceResolver) {
+        throw new ConfigurationException(
+                "Cannot set a resource resolver on " + this.getClass().getName() + ". If " +
+                "you want to set your own resource resolver, use " + TemplateResolver.class.getName() +
+                "instead");
+    }
+
+
+
+}
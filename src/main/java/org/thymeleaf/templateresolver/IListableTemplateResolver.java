@@ -0,0 +1,48 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.templateresolver;
+
+import java.util.Set;
+
+/**
+ * <p>
+ *   Template resolvers able to enumerate the names of all the templates they can resolve. Used for
+ *   discovering the templates to be warmed up when the engine is initialized
+ *   (see {@link org.thymeleaf.TemplateEngine#setWarmUpTemplates(java.util.Set)}).
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public interface IListableTemplateResolver extends ITemplateResolver {
+
+    /**
+     * <p>
+     *   Returns the names of all the templates this resolver can resolve, this is, the names that
+     *   could be passed to {@link #resolveTemplate(org.thymeleaf.IEngineConfiguration, org.thymeleaf.context.IContext, String)}.
+     * </p>
+     *
+     * @return the template names.
+     */
+    public Set<String> getTemplateNames();
+
+}
@@ -112,6 +112,11 @@ public interface ITemplateResolver {
      *   Resolver that it will know whether the template was correctly resolved by
      *   a Template Resolver or not.
      * </p>
+     * <p>
+     *   Results with a cacheable validity must not depend on the context: the engine will cache the
+     *   parsed template and memoize which resolver resolves it by template name only, for as long as
+     *   the validities of the results involved say they are still valid.
+     * </p>
      * 
      * @param configuration the engine configuration.
      * @param context the context being applied to the template execution.
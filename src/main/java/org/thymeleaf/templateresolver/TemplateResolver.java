@@ -19,6 +19,7 @@
  */
 package org.thymeleaf.templateresolver;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -26,10 +27,13 @@
 
 import org.thymeleaf.IEngineConfiguration;
 import org.thymeleaf.cache.AlwaysValidCacheEntryValidity;
+import org.thymeleaf.cache.FileModificationCacheEntryValidity;
 import org.thymeleaf.cache.ICacheEntryValidity;
 import org.thymeleaf.cache.NonCacheableCacheEntryValidity;
+import org.thymeleaf.cache.RefreshAheadTTLCacheEntryValidity;
 import org.thymeleaf.cache.TTLCacheEntryValidity;
 import org.thymeleaf.context.IContext;
+import org.thymeleaf.resourceresolver.FileResourceResolver;
 import org.thymeleaf.resourceresolver.IResourceResolver;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.util.PatternSpec;
@@ -52,7 +56,10 @@
  * <ul>
  *   <li>If not cacheable: {@link NonCacheableCacheEntryValidity}.</li>
  *   <li>If cacheable and TTL not set: {@link AlwaysValidCacheEntryValidity}.</li>
- *   <li>If cacheable and TTL set: {@link TTLCacheEntryValidity}.</li>
+ *   <li>If cacheable and TTL set: {@link TTLCacheEntryValidity}, or {@link RefreshAheadTTLCacheEntryValidity}
+ *       if <i>cache refresh-ahead</i> is enabled.</li>
+ *   <li>If cacheable, resolved by a {@link FileResourceResolver} and a file check interval
+ *       set: {@link FileModificationCacheEntryValidity} (this has precedence over TTL).</li>
  * </ul>
  * 
  * @author Daniel Fern&aacute;ndez
@@ -86,6 +93,21 @@ public class TemplateResolver
      */
     public static final Long DEFAULT_CACHE_TTL_MS = null;
 
+    /**
+     * <p>
+     *   Default value for the cache file check interval: null. This means cache entries for templates
+     *   resolved from the file system will not be invalidated when their files are modified.
+     * </p>
+     */
+    public static final Long DEFAULT_CACHE_FILE_CHECK_INTERVAL_MS = null;
+
+    /**
+     * <p>
+     *   Default value for the <i>cache refresh-ahead</i> flag: false.
+     * </p>
+     */
+    public static final boolean DEFAULT_CACHE_REFRESH_AHEAD = false;
+
     
     private String prefix = null;
     private String suffix = null;
@@ -93,6 +115,8 @@ public class TemplateResolver
     private TemplateMode templateMode = DEFAULT_TEMPLATE_MODE;
     private boolean cacheable = DEFAULT_CACHEABLE;
     private Long cacheTTLMs = null;
+    private Long cacheFileCheckIntervalMs = DEFAULT_CACHE_FILE_CHECK_INTERVAL_MS;
+    private boolean cacheRefreshAhead = DEFAULT_CACHE_REFRESH_AHEAD;
     private IResourceResolver resourceResolver = null;
     
     private final HashMap<String,String> templateAliases = new HashMap<String, String>(8);
@@ -321,6 +345,75 @@ public void setCacheTTLMs(final Long cacheTTLMs) {
         this.cacheTTLMs = cacheTTLMs;
     }
 
+
+    /**
+     * <p>
+     *   Returns the interval (in milliseconds) at which the files of cached templates will be checked
+     *   for modifications, if templates are resolved from the file system (i.e. by means of a
+     *   {@link FileResourceResolver}).
+     * </p>
+     * <p>
+     *   If null, no checks will be performed.
+     * </p>
+     *
+     * @return the cache file check interval.
+     */
+    public final Long getCacheFileCheckIntervalMs() {
+        return this.cacheFileCheckIntervalMs;
+    }
+
+
+    /**
+     * <p>
+     *   Sets a new value for the interval (in milliseconds) at which the files of cached templates
+     *   will be checked for modifications, if templates are resolved from the file system (i.e. by means
+     *   of a {@link FileResourceResolver}).
+     * </p>
+     * <p>
+     *   When set, cached templates will be considered valid for as long as their files are not modified,
+     *   and this will have precedence over any TTL set by means of {@link #setCacheTTLMs(Long)}.
+     * </p>
+     *
+     * @param cacheFileCheckIntervalMs the new cache file check interval, or null for not checking files.
+     */
+    public void setCacheFileCheckIntervalMs(final Long cacheFileCheckIntervalMs) {
+        this.cacheFileCheckIntervalMs = cacheFileCheckIntervalMs;
+    }
+
+
+    /**
+     * <p>
+     *   Returns whether cached templates whose TTL has expired should keep being used while they
+     *   are refreshed in the background (<i>stale-while-revalidate</i>), instead of being resolved
+     *   and parsed again by the first request that finds them expired.
+     * </p>
+     * <p>
+     *   This only applies if a cache TTL has been set (see {@link #setCacheTTLMs(Long)}).
+     * </p>
+     *
+     * @return whether cache refresh-ahead is enabled or not.
+     */
+    public final boolean isCacheRefreshAhead() {
+        return this.cacheRefreshAhead;
+    }
+
+
+    /**
+     * <p>
+     *   Sets whether cached templates whose TTL has expired should keep being used while they
+     *   are refreshed in the background (<i>stale-while-revalidate</i>), instead of being resolved
+     *   and parsed again by the first request that finds them expired.
+     * </p>
+     * <p>
+     *   This only applies if a cache TTL has been set (see {@link #setCacheTTLMs(Long)}).
+     * </p>
+     *
+     * @param cacheRefreshAhead whether cache refresh-ahead should be enabled or not.
+     */
+    public void setCacheRefreshAhead(final boolean cacheRefreshAhead) {
+        this.cacheRefreshAhead = cacheRefreshAhead;
+    }
+
     
     /**
      * <p>
@@ -1047,26 +1140,38 @@ protected ICacheEntryValidity computeValidity(
             final IEngineConfiguration configuration, final IContext context, final String template) {
 
         if (this.cacheablePatternSpec.matches(template)) {
-            if (this.cacheTTLMs != null) {
-                return new TTLCacheEntryValidity(this.cacheTTLMs.longValue());
-            }
-            return AlwaysValidCacheEntryValidity.INSTANCE;
+            return computeCacheableValidity(configuration, context, template);
         }
         if (this.nonCacheablePatternSpec.matches(template)) {
             return NonCacheableCacheEntryValidity.INSTANCE;
         }
         
         if (isCacheable()) {
-            if (this.cacheTTLMs != null) {
-                return new TTLCacheEntryValidity(this.cacheTTLMs.longValue());
-            }
-            return AlwaysValidCacheEntryValidity.INSTANCE;
+            return computeCacheableValidity(configuration, context, template);
         }
         return NonCacheableCacheEntryValidity.INSTANCE;
         
     }
 
 
+    private ICacheEntryValidity computeCacheableValidity(
+            final IEngineConfiguration configuration, final IContext context, final String template) {
+
+        if (this.cacheFileCheckIntervalMs != null && this.resourceResolver instanceof FileResourceResolver) {
+            final File templateFile = new File(computeResourceName(configuration, context, template));
+            return new FileModificationCacheEntryValidity(templateFile, this.cacheFileCheckIntervalMs.longValue());
+        }
+        if (this.cacheTTLMs != null) {
+            if (this.cacheRefreshAhead) {
+                return new RefreshAheadTTLCacheEntryValidity(this.cacheTTLMs.longValue());
+            }
+            return new TTLCacheEntryValidity(this.cacheTTLMs.longValue());
+        }
+        return AlwaysValidCacheEntryValidity.INSTANCE;
+
+    }
+
+
     
     
     @Override
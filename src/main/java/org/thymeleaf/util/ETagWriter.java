@@ -0,0 +1,184 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * <p>
+ *   Writer wrapper that computes an <tt>ETag</tt> for all the output written through it, incrementally
+ *   (chunk by chunk), so that conditional requests can be supported without having to buffer the
+ *   whole output in order to hash it.
+ * </p>
+ * <p>
+ *   The resulting ETag (see {@link #getETag()}) is computed from a 64-bit FNV-1a hash of the written
+ *   chars along with their count. It is meant for change detection, not for any kind of security.
+ * </p>
+ * <p>
+ *   Objects of this class are <b>not thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ *
+ * @since 3.0.0
+ *
+ */
+public final class ETagWriter extends Writer {
+
+    private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_64_PRIME = 0x100000001b3L;
+
+    private final Writer writer;
+    private long hash;
+    private long length;
+
+
+
+    public ETagWriter(final Writer writer) {
+        super();
+        Validate.notNull(writer, "Writer cannot be null");
+        this.writer = writer;
+        this.hash = FNV_64_OFFSET_BASIS;
+        this.length = 0L;
+    }
+
+
+
+
+    @Override
+    public void write(final int c) throws IOException {
+        this.writer.write(c);
+        this.hash = hashChar(this.hash, (char) c);
+        this.length++;
+    }
+
+
+    @Override
+    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+        this.writer.write(cbuf, off, len);
+        this.hash = computeHash(this.hash, cbuf, off, len);
+        this.length += len;
+    }
+
+
+    @Override
+    public void write(final String str, final int off, final int len) throws IOException {
+        this.writer.write(str, off, len);
+        long h = this.hash;
+        final int maxi = off + len;
+        for (int i = off; i < maxi; i++) {
+            h = hashChar(h, str.charAt(i));
+        }
+        this.hash = h;
+        this.length += len;
+    }
+
+
+    /**
+     * <p>
+     *   Writes a complete chunk of output whose hash has already been computed by means of
+     *   {@link #computeHash(char[], int, int)} (for example, when that output comes from a cache), so that
+     *   its chars do not need to be hashed again if nothing has been written to this writer yet.
+     * </p>
+     *
+     * @param cbuf the chars to be written.
+     * @param cbufHash the precomputed hash of the whole <tt>cbuf</tt> array.
+     * @throws IOException if the underlying writer raises it.
+     */
+    public void writePrehashed(final char[] cbuf, final long cbufHash) throws IOException {
+        if (this.length != 0L) {
+            write(cbuf, 0, cbuf.length);
+            return;
+        }
+        this.writer.write(cbuf, 0, cbuf.length);
+        this.hash = cbufHash;
+        this.length = cbuf.length;
+    }
+
+
+    @Override
+    public void flush() throws IOException {
+        this.writer.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        this.writer.close();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Returns the ETag computed for all the output written so far, quoted as required for its
+     *   use as the value of an <tt>ETag</tt> HTTP header.
+     * </p>
+     *
+     * @return the ETag.
+     */
+    public String getETag() {
+        final StringBuilder strBuilder = new StringBuilder(36);
+        strBuilder.append('"');
+        strBuilder.append(Long.toHexString(this.hash));
+        strBuilder.append('-');
+        strBuilder.append(Long.toHexString(this.length));
+        strBuilder.append('"');
+        return strBuilder.toString();
+    }
+
+
+
+
+    /**
+     * <p>
+     *   Computes the hash of a chunk of output in the same way an <tt>ETagWriter</tt> would if it were
+     *   the first thing written to it. Meant for precomputing the hashes of cached output.
+     * </p>
+     *
+     * @param cbuf the chars to be hashed.
+     * @param off the offset.
+     * @param len the length.
+     * @return the computed hash.
+     */
+    public static long computeHash(final char[] cbuf, final int off, final int len) {
+        return computeHash(FNV_64_OFFSET_BASIS, cbuf, off, len);
+    }
+
+
+    private static long computeHash(final long initialHash, final char[] cbuf, final int off, final int len) {
+        long h = initialHash;
+        final int maxi = off + len;
+        for (int i = off; i < maxi; i++) {
+            h = hashChar(h, cbuf[i]);
+        }
+        return h;
+    }
+
+
+    private static long hashChar(final long h, final char c) {
+        return (((h ^ (c & 0xFF)) * FNV_64_PRIME) ^ (c >>> 8)) * FNV_64_PRIME;
+    }
+
+
+}
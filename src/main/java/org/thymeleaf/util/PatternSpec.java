@@ -19,10 +19,11 @@
  */
 package org.thymeleaf.util;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 
 /**
@@ -33,6 +34,12 @@
  *   implementations for holding the patterns that match a template to a specific
  *   template mode.
  * </p>
+ * <p>
+ *   Patterns can contain any number of <tt>*</tt> wildcards (matching any sequence of
+ *   characters, including none). Instead of being converted into regular expressions,
+ *   patterns are split into the literal fragments between wildcards, which are then
+ *   matched against names by means of simple <tt>String</tt> operations.
+ * </p>
  * 
  * @author Daniel Fern&aacute;ndez
  * 
@@ -43,8 +50,11 @@ public final class PatternSpec {
 
     private static final int DEFAULT_PATTERN_SET_SIZE = 3;
     
+    private static final String[][] NO_PATTERNS = new String[0][];
+
     private LinkedHashSet<String> patternStrs;
-    private LinkedHashSet<Pattern> patterns;
+    // Each pattern is split into the literal fragments between its wildcards
+    private String[][] patterns = NO_PATTERNS;
 
     
     
@@ -56,7 +66,7 @@ public PatternSpec() {
     
 
     public boolean isEmpty() {
-        return this.patterns == null || this.patterns.size() == 0;
+        return this.patterns.length == 0;
     }
 
     
@@ -70,56 +80,110 @@ public Set<String> getPatterns() {
 
     public void setPatterns(final Set<String> newPatterns) {
         if (newPatterns != null) {
-            if (this.patterns == null) {
+            if (this.patternStrs == null) {
                 this.patternStrs = new LinkedHashSet<String>(DEFAULT_PATTERN_SET_SIZE);
-                this.patterns = new LinkedHashSet<Pattern>(DEFAULT_PATTERN_SET_SIZE);
             } else {
                 this.patternStrs.clear();
-                this.patterns.clear();
             }
             this.patternStrs.addAll(newPatterns);
-            for (final String pattern : newPatterns) {
-                this.patterns.add(PatternUtils.strPatternToPattern(pattern));
-            }
-        } else if (this.patterns != null) {
+        } else if (this.patternStrs != null) {
             this.patternStrs.clear();
-            this.patterns.clear();
         }
+        compilePatterns();
     }
     
     
     public void addPattern(final String pattern) {
         Validate.notEmpty(pattern, "Pattern cannot be null or empty");
-        if (this.patterns == null) {
+        if (this.patternStrs == null) {
             this.patternStrs = new LinkedHashSet<String>(DEFAULT_PATTERN_SET_SIZE);
-            this.patterns = new LinkedHashSet<Pattern>(DEFAULT_PATTERN_SET_SIZE);
         }
         this.patternStrs.add(pattern);
-        this.patterns.add(PatternUtils.strPatternToPattern(pattern));
+        compilePatterns();
     }
 
     
     public void clearPatterns() {
-        if (this.patterns != null) {
+        if (this.patternStrs != null) {
             this.patternStrs.clear();
-            this.patterns.clear();
         }
+        compilePatterns();
+    }
+
+
+    private void compilePatterns() {
+        if (this.patternStrs == null || this.patternStrs.isEmpty()) {
+            this.patterns = NO_PATTERNS;
+            return;
+        }
+        final String[][] newPatterns = new String[this.patternStrs.size()][];
+        int i = 0;
+        for (final String pattern : this.patternStrs) {
+            newPatterns[i++] = splitPattern(pattern);
+        }
+        this.patterns = newPatterns;
+    }
+
+
+    /*
+     * "a*b*c" -> {"a","b","c"}, "*b*" -> {"","b",""}, "abc" -> {"abc"}
+     */
+    private static String[] splitPattern(final String pattern) {
+        final List<String> fragments = new ArrayList<String>(3);
+        int start = 0;
+        int wildcard;
+        while ((wildcard = pattern.indexOf('*', start)) >= 0) {
+            fragments.add(pattern.substring(start, wildcard));
+            start = wildcard + 1;
+        }
+        fragments.add(pattern.substring(start));
+        return fragments.toArray(new String[fragments.size()]);
     }
     
     
     
     
     public boolean matches(final String templateName) {
-        if (this.patterns == null) {
-            return false;
-        }
-        for (final Pattern p : this.patterns) {
-            if (p.matcher(templateName).matches()) {
+        final String[][] currentPatterns = this.patterns;
+        for (int i = 0; i < currentPatterns.length; i++) {
+            if (matches(currentPatterns[i], templateName)) {
                 return true;
             }
         }
         return false;
     }
+
+
+    private static boolean matches(final String[] fragments, final String name) {
+
+        if (fragments.length == 1) {
+            // No wildcards at all
+            return fragments[0].equals(name);
+        }
+
+        final String first = fragments[0];
+        final String last = fragments[fragments.length - 1];
+        final int end = name.length() - last.length();
+        if (end < first.length() || !name.startsWith(first) || !name.endsWith(last)) {
+            return false;
+        }
+
+        // As the only wildcard is '*', matching each fragment at its leftmost position is always correct
+        int pos = first.length();
+        for (int i = 1; i < fragments.length - 1; i++) {
+            final String fragment = fragments[i];
+            if (fragment.length() == 0) {
+                continue;
+            }
+            final int fragmentPos = name.indexOf(fragment, pos);
+            if (fragmentPos < 0 || fragmentPos + fragment.length() > end) {
+                return false;
+            }
+            pos = fragmentPos + fragment.length();
+        }
+        return true;
+
+    }
     
     
     
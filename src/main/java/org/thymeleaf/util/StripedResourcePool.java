@@ -0,0 +1,197 @@
+/*
+ * =============================================================================
+ *
+ *   Copyright (c) 2011-2014, The THYMELEAF team (http://www.thymeleaf.org)
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ *
+ * =============================================================================
+ */
+package org.thymeleaf.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ *   Non-blocking, lock-free pool of reusable resources.
+ * </p>
+ * <p>
+ *   Unlike {@link ResourcePool}, this pool never blocks: if no pooled resource is available when
+ *   one is requested, a new one is created (a <i>miss</i>). Released resources are kept for later reuse as long as
+ *   there is room for them in the pool (up to its <i>capacity</i>), so the amount of resources held by the pool
+ *   adapts to the maximum concurrency actually observed, and no resources are created in advance.
+ * </p>
+ * <p>
+ *   Pooled resources are kept in an array of slots that are claimed and returned with compare-and-set
+ *   operations. Each thread starts looking at a different slot (depending on its id), so that concurrent
+ *   threads do not compete for the same slots.
+ * </p>
+ * <p>
+ *   Should be used in a similar fashion to the following, so that resources are always returned to the pool:
+ * </p>
+ * <pre>
+ *   MyResource resource = myPool.allocate();
+ *   try {
+ *       // actual code using the resource
+ *   } finally {
+ *       myPool.release(resource);
+ *   }
+ * </pre>
+ * <p>
+ *   Objects of this class are <b>thread-safe</b>.
+ * </p>
+ *
+ * @author Daniel Fern&aacute;ndez
+ * @since 3.0.0
+ *
+ */
+public final class StripedResourcePool<T> {
+
+    private final ResourcePool.IResourceFactory<T> resourceFactory;
+    private final AtomicReferenceArray<T> slots;
+    private final int capacity;
+
+    private final AtomicLong hitCount;
+    private final AtomicLong missCount;
+
+
+
+    public StripedResourcePool(final ResourcePool.IResourceFactory<T> resourceFactory, final int capacity) {
+        super();
+        Validate.notNull(resourceFactory, "Resource factory for pool cannot be null");
+        Validate.isTrue(capacity >= 0, "Pool capacity must be >= 0");
+        this.resourceFactory = resourceFactory;
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<T>(capacity);
+        this.hitCount = new AtomicLong(0L);
+        this.missCount = new AtomicLong(0L);
+    }
+
+
+
+    /**
+     * <p>
+     *   Allocates a resource, either taking it from the pool or creating a new one if none is available.
+     *   Never blocks.
+     * </p>
+     *
+     * @return the allocated resource.
+     */
+    public T allocate() {
+
+        if (this.capacity > 0) {
+            final int start = computeStartSlot();
+            for (int i = 0; i < this.capacity; i++) {
+                final int slot = (start + i) % this.capacity;
+                final T resource = this.slots.get(slot);
+                if (resource != null && this.slots.compareAndSet(slot, resource, null)) {
+                    this.hitCount.incrementAndGet();
+                    return resource;
+                }
+            }
+        }
+
+        this.missCount.incrementAndGet();
+        final T resource = this.resourceFactory.createResource();
+        if (resource == null) {
+            throw new IllegalStateException(
+                    "Resource created by factory \"" + this.resourceFactory.getClass().getName() + "\"returned null");
+        }
+        return resource;
+
+    }
+
+
+
+    /**
+     * <p>
+     *   Returns a resource to the pool. If the pool is already full, the resource is simply discarded.
+     * </p>
+     *
+     * @param resource the resource to be returned to the pool.
+     */
+    public void release(final T resource) {
+
+        if (resource == null || this.capacity == 0) {
+            return;
+        }
+        final int start = computeStartSlot();
+        for (int i = 0; i < this.capacity; i++) {
+            final int slot = (start + i) % this.capacity;
+            if (this.slots.get(slot) == null && this.slots.compareAndSet(slot, null, resource)) {
+                return;
+            }
+        }
+        // Pool is full: the resource will be garbage collected
+
+    }
+
+
+
+    private int computeStartSlot() {
+        return (int) (Thread.currentThread().getId() % this.capacity);
+    }
+
+
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the amount of resources currently held in the pool (i.e. not allocated). Only indicative,
+     *   as it might be changing concurrently.
+     * </p>
+     *
+     * @return the amount of pooled resources.
+     */
+    public int getPooledCount() {
+        int count = 0;
+        for (int i = 0; i < this.capacity; i++) {
+            if (this.slots.get(i) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+
+    /**
+     * <p>
+     *   Returns the amount of allocations that could be served with a pooled resource.
+     * </p>
+     *
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+
+    /**
+     * <p>
+     *   Returns the amount of allocations that required the creation of a new resource.
+     * </p>
+     *
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+
+
+}